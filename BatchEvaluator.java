@@ -0,0 +1,142 @@
+/**
+ * Fills combination values a block at a time instead of one recursive call per leaf.
+ * The operators of the last few positions vary fastest, so the values of one operator prefix are a
+ * contiguous block whose lanes differ only in those operators. The prefix is walked once, then every
+ * lane runs the same (sum, sign, term) steps as getCombinations, reading its operators from tables.
+ * Signs are kept as +1, -1 or 0 for none, and sum + sign * term is the same floating point operation
+ * as sum + term or sum - term, so the values are bit for bit the ones getCombinations computes.
+ *
+ * When the jdk.incubator.vector module is present, create() returns VectorBatchEvaluator, which runs
+ * the lanes of a block in SIMD registers; see vector/. Run one at a time, lanes redo the steps their
+ * prefix shares, so the scalar fallback uses blocks of one lane and walks the whole tree instead.
+ */
+class BatchEvaluator {
+
+	//Vectorized blocks hold at most this many lanes.
+	static final int MAX_BLOCK = 81;
+
+	final char[] operators;
+	//The largest number of block positions, so that operators.length^blockPositions fits the block size.
+	final int blockPositions;
+	//sizes[s]: the number of lanes in a block of s positions.
+	final int[] sizes;
+	//multiply[s][j][b]: whether lane b of a block of s positions has '*' at its position j. signs likewise.
+	final boolean[][][] multiply;
+	final double[][][] signs;
+
+	BatchEvaluator(char[] operators){
+		this(operators, 1);
+	}
+
+	/**
+	 * @param operators the operators of the solver, in ordinal order.
+	 * @param maxBlock the most lanes a block may hold.
+	 */
+	BatchEvaluator(char[] operators, int maxBlock){
+		this.operators = operators;
+		int positions = 0;
+		for (long size = operators.length; operators.length > 1 && size <= maxBlock; size *= operators.length) {
+			positions++;
+		}
+		this.blockPositions = operators.length > 1 ? positions : 0;
+		sizes = new int[blockPositions + 1];
+		multiply = new boolean[blockPositions + 1][][];
+		signs = new double[blockPositions + 1][][];
+		for (int s = 0; s <= blockPositions; s++) {
+			int size = s == 0 ? 1 : sizes[s - 1] * operators.length;
+			sizes[s] = size;
+			multiply[s] = new boolean[s][size];
+			signs[s] = new double[s][size];
+			for (int b = 0; b < size; b++) {
+				int lane = b;
+				for (int j = s - 1; j >= 0; j--) {
+					char c = operators[lane % operators.length];
+					lane /= operators.length;
+					multiply[s][j][b] = c == '*';
+					signs[s][j][b] = sign(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the vectorized evaluator if the Vector API can be loaded, this one otherwise.
+	 * @param operators the operators of the solver, in ordinal order.
+	 * @return the evaluator.
+	 */
+	static BatchEvaluator create(char[] operators){
+		try {
+			return (BatchEvaluator) Class.forName("VectorBatchEvaluator")
+					.getDeclaredConstructor(char[].class).newInstance((Object) operators);
+		} catch (ReflectiveOperationException | LinkageError ex) {
+			return new BatchEvaluator(operators);
+		}
+	}
+
+	static double sign(char c){
+		return c == '+' ? 1 : c == '-' ? -1 : 0;
+	}
+
+	/**
+	 * Whether the lanes run in SIMD registers.
+	 */
+	boolean vectorized(){
+		return false;
+	}
+
+	/**
+	 * Fills values the way OperationInsertion.getCombinations does, from the same arguments.
+	 */
+	void fill(double[] values, int[] ints, int position, int to, double sum, char sign, double term, int ordinal){
+		int s = Math.min(blockPositions, to - position);
+		prefix(values, ints, position, to - s, s, sum, sign(sign), term, ordinal);
+	}
+
+	private void prefix(double[] values, int[] ints, int position, int blockStart, int s, double sum, double sign, double term, int ordinal){
+		if(position == blockStart){
+			OperationInsertion.checkInterrupted(ordinal);
+			block(values, ordinal * sizes[s], ints, position, s, sum, sign, term);
+			return;
+		}
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				prefix(values, ints, position + 1, blockStart, s, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				prefix(values, ints, position + 1, blockStart, s, commit(sum, sign, term), sign(c), ints[position], ordinal * operators.length + k);
+			}
+		}
+	}
+
+	/**
+	 * Fills one block of lanes, the last s positions starting at position, from the state the prefix left.
+	 */
+	void block(double[] values, int offset, int[] ints, int position, int s, double sum, double sign, double term){
+		lanes(values, offset, 0, sizes[s], ints, position, s, sum, sign, term);
+	}
+
+	//Runs lanes [from, to) of a block one at a time.
+	final void lanes(double[] values, int offset, int from, int to, int[] ints, int position, int s, double sum, double sign, double term){
+		boolean[][] multiply = this.multiply[s];
+		double[][] signs = this.signs[s];
+		for (int b = from; b < to; b++) {
+			double laneSum = sum, laneSign = sign, laneTerm = term;
+			for (int j = 0; j < s; j++) {
+				if(multiply[j][b]){
+					laneTerm *= ints[position + j];
+				}
+				else{
+					laneSum = commit(laneSum, laneSign, laneTerm);
+					laneSign = signs[j][b];
+					laneTerm = ints[position + j];
+				}
+			}
+			values[offset + b] = commit(laneSum, laneSign, laneTerm);
+		}
+	}
+
+	static double commit(double sum, double sign, double term){
+		return sign == 0 ? term : sum + sign * term;
+	}
+}
@@ -0,0 +1,91 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Solves one puzzle per input line and writes one result per output line,
+ * reusing the same solver (and so its operators and caches) for every puzzle.
+ */
+class BatchSolver {
+
+	final OperationInsertion solver;
+	long puzzles;
+	long solved;
+	long nanos;
+
+	BatchSolver(OperationInsertion solver){
+		this.solver = solver;
+	}
+
+	/**
+	 * Solves every line of a file, or of stdin if the file is null, printing the results to stdout.
+	 * @param file the path of the file to read, or null.
+	 * @throws IOException if reading or writing fails.
+	 */
+	void run(String file) throws IOException {
+		try (PuzzleReader reader = file == null ? PuzzleReader.open(System.in) : PuzzleReader.open(Paths.get(file));
+			 Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+			run(reader, writer);
+		}
+		report(System.err);
+	}
+
+	/**
+	 * Solves every puzzle the reader parses, writing one result line per puzzle.
+	 * Blank lines are skipped, lines that are not a list of numbers or that the solver rejects,
+	 * like one with too many numbers, get "Invalid puzzle.".
+	 * @param reader where the puzzles come from.
+	 * @param writer where the results go.
+	 * @throws IOException if reading or writing fails.
+	 */
+	void run(PuzzleReader reader, Writer writer) throws IOException {
+		long start = System.nanoTime();
+		while(true){
+			String equation;
+			try {
+				if(!reader.next()){
+					break;
+				}
+				equation = solver.solve(reader.ints());
+			} catch (IllegalArgumentException ex) {
+				writer.write("Invalid puzzle.\n");
+				puzzles++;
+				continue;
+			}
+			write(writer, equation);
+		}
+		writer.flush();
+		nanos += System.nanoTime() - start;
+	}
+
+	private void write(Writer writer, String equation) throws IOException {
+		if(equation == null){
+			writer.write("No equation possible.\n");
+		}
+		else{
+			writer.write(equation);
+			writer.write('\n');
+			solved++;
+		}
+		puzzles++;
+	}
+
+	/**
+	 * Prints how many puzzles were solved and how fast, and how the cache did if there is one.
+	 * @param out where to print.
+	 */
+	void report(PrintStream out){
+		double seconds = nanos / 1e9;
+		out.printf("%d puzzles (%d solved) in %.3f s, %.1f puzzles/s%n",
+				puzzles, solved, seconds, seconds > 0 ? puzzles / seconds : 0.0);
+		SolutionCache cache = solver.cache;
+		if(cache != null){
+			out.printf("cache: %d hits, %d misses; ranges: %d hits, %d misses%n",
+					cache.hits, cache.misses, cache.rangeHits, cache.rangeMisses);
+		}
+	}
+}
@@ -0,0 +1,294 @@
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Solves a puzzle within a wall-clock and memory budget, checked every few thousand combinations
+ * while a side of a split is enumerated and while the other side is joined against it.
+ * Each split is joined like StreamingJoin: the smaller side is stored as its distinct values and the
+ * larger side is streamed through in ordinal order. When the budget runs out the result says how far
+ * the search got, and its checkpoint lets a later call go on from the streamed ordinal it stopped at.
+ * The equation found is the one solve() reports.
+ */
+class BudgetedSolver {
+
+	enum Status { SOLVED, UNSOLVABLE, BUDGET_EXHAUSTED }
+
+	/**
+	 * Where a search stopped: the split, the next ordinal of its streamed side, and the best match
+	 * found so far when the right-hand side is the one streamed.
+	 */
+	static final class Checkpoint {
+		final int puzzle;
+		final int split;
+		final long next;
+		final long bestLhs;
+		final long bestRhs;
+
+		Checkpoint(int puzzle, int split, long next, long bestLhs, long bestRhs){
+			this.puzzle = puzzle;
+			this.split = split;
+			this.next = next;
+			this.bestLhs = bestLhs;
+			this.bestRhs = bestRhs;
+		}
+
+		/**
+		 * Reads a checkpoint written by toString.
+		 * @param text the checkpoint.
+		 * @return the checkpoint.
+		 * @throws IllegalArgumentException if the text isn't a checkpoint.
+		 */
+		static Checkpoint parse(String text){
+			String[] fields = text.split(":");
+			if(fields.length != 5){
+				throw new IllegalArgumentException("Not a checkpoint: " + text);
+			}
+			return new Checkpoint(Integer.parseUnsignedInt(fields[0], 16), Integer.parseInt(fields[1]),
+					Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+		}
+
+		@Override
+		public String toString(){
+			return Integer.toHexString(puzzle) + ":" + split + ":" + next + ":" + bestLhs + ":" + bestRhs;
+		}
+	}
+
+	/**
+	 * The outcome of a budgeted solve.
+	 */
+	static final class Result {
+		final Status status;
+		//The equation if solved, null otherwise.
+		final String equation;
+		//The splits searched completely.
+		final int splits;
+		//The ordinals of the streamed side searched in the split after those.
+		final long prefixes;
+		//Where to resume from if the budget ran out, null otherwise.
+		final Checkpoint checkpoint;
+
+		Result(Status status, String equation, int splits, long prefixes, Checkpoint checkpoint){
+			this.status = status;
+			this.equation = equation;
+			this.splits = splits;
+			this.prefixes = prefixes;
+			this.checkpoint = checkpoint;
+		}
+	}
+
+	final OperationInsertion solver;
+	final int[] ints;
+	final long millis;
+	final long heapBytes;
+
+	private final long[] powers;
+	private long deadline;
+	private long leaves;
+	private boolean exhausted;
+	private RangeValues stored;
+	private long start;
+	private long next;
+	private long bestLhs;
+	private long bestRhs;
+
+	/**
+	 * @param solver the solver whose operators are used; it must not need the extended search or exact arithmetic.
+	 * @param ints the numbers of the puzzle.
+	 * @param millis how long the search may run, from the call to solve.
+	 * @param heapBytes how many bytes the stored side of a split may take.
+	 * @throws IllegalArgumentException if the solver's settings need another search.
+	 */
+	BudgetedSolver(OperationInsertion solver, int[] ints, long millis, long heapBytes){
+		if(solver.extended() || solver.config.arithmetic == Utils.ShuntingArithmetic.EXACT){
+			throw new IllegalArgumentException("Budgeted solving only knows + - and * in double arithmetic");
+		}
+		this.solver = solver;
+		this.ints = ints;
+		this.millis = millis;
+		this.heapBytes = heapBytes;
+		powers = new long[Math.max(ints.length, 1)];
+		powers[0] = 1;
+		for (int i = 1; i < ints.length; i++) {
+			powers[i] = powers[i - 1] * solver.operators.length;
+		}
+	}
+
+	//Identifies the puzzle and operators a checkpoint belongs to.
+	int puzzle(){
+		return Arrays.hashCode(ints) * 31 + Arrays.hashCode(solver.operators);
+	}
+
+	/**
+	 * Searches the splits from the checkpoint on, until an equation is found, there are no splits left,
+	 * or the budget runs out.
+	 * @param from where an earlier call stopped, or null to start from the first split.
+	 * @return the result.
+	 * @throws IllegalArgumentException if the checkpoint is for another puzzle.
+	 * @throws CancellationException if the thread is interrupted.
+	 */
+	Result solve(Checkpoint from){
+		if(from != null && (from.puzzle != puzzle() || from.split < 0 || from.split >= ints.length - 1)){
+			throw new IllegalArgumentException("Checkpoint is for another puzzle: " + from);
+		}
+		deadline = System.nanoTime() + millis * 1_000_000;
+		leaves = 0;
+		exhausted = false;
+		int e = from == null ? 0 : from.split;
+		start = from == null ? 0 : from.next;
+		bestLhs = from == null ? Long.MAX_VALUE : from.bestLhs;
+		bestRhs = from == null ? -1 : from.bestRhs;
+		try {
+			for (; e < ints.length - 1; e++) {
+				if(Thread.currentThread().isInterrupted()){
+					throw new CancellationException("Solve interrupted");
+				}
+				long[] match = join(e);
+				if(exhausted){
+					return new Result(Status.BUDGET_EXHAUSTED, null, e, next, new Checkpoint(puzzle(), e, next, bestLhs, bestRhs));
+				}
+				if(match != null){
+					return new Result(Status.SOLVED, solver.equation(ints, e, match[0], match[1]), e, next, null);
+				}
+				start = 0;
+				bestLhs = Long.MAX_VALUE;
+				bestRhs = -1;
+			}
+			return new Result(Status.UNSOLVABLE, null, e, 0, null);
+		} finally {
+			stored = null;
+			if(SolverMetrics.enabled){
+				SolverMetrics.INSTANCE.combinations.add(leaves);
+			}
+		}
+	}
+
+	//Joins one split from the start ordinal of its streamed side; sets exhausted and next if it stops early.
+	private long[] join(int e){
+		int n = ints.length;
+		stored = new RangeValues(16);
+		next = start;
+		if(e + 1 > n - e - 1){
+			if(store(e+2, n, 0, '\0', ints[e+1], 0)){
+				return null;
+			}
+			long[] match = new long[2];
+			return streamLhs(e+1, 1, 0, '\0', ints[0], 0, match) && !exhausted ? match : null;
+		}
+		if(store(1, e+1, 0, '\0', ints[0], 0)){
+			return null;
+		}
+		streamRhs(n, e+2, 0, '\0', ints[e+1], 0);
+		return exhausted || bestLhs == Long.MAX_VALUE ? null : new long[]{bestLhs, bestRhs};
+	}
+
+	//Counts a combination and, every OperationInsertion.CHECK_INTERVAL of them, checks the budget.
+	private boolean overBudget(){
+		if((++leaves & (OperationInsertion.CHECK_INTERVAL - 1)) != 0){
+			return false;
+		}
+		exhausted = System.nanoTime() - deadline > 0 || (long) stored.capacity() * 16 > heapBytes;
+		return exhausted;
+	}
+
+	private boolean store(int position, int to, double sum, char sign, double term, long ordinal){
+		if(position == to){
+			if(overBudget()){
+				return true;
+			}
+			stored.offer(solver.commit(sum, sign, term), ordinal);
+			return false;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			boolean stop;
+			if(c == '*'){
+				stop = store(position + 1, to, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				stop = store(position + 1, to, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
+			if(stop){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//Whether the subtree of ordinal, with the positions from position to to still open, ends before start.
+	private boolean searched(long ordinal, int position, int to){
+		return (ordinal + 1) * powers[to - position] <= start;
+	}
+
+	//Streams the left-hand side in order from start, stopping at the first match or when the budget runs out.
+	private boolean streamLhs(int to, int position, double sum, char sign, double term, long ordinal, long[] match){
+		if(position == to){
+			if(overBudget()){
+				return true;
+			}
+			long rhs = stored.code(solver.commit(sum, sign, term));
+			next = ordinal + 1;
+			if(rhs >= 0){
+				match[0] = ordinal;
+				match[1] = rhs;
+				return true;
+			}
+			return false;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			long child = ordinal * operators.length + k;
+			if(searched(child, position + 1, to)){
+				continue;
+			}
+			boolean stop;
+			if(c == '*'){
+				stop = streamLhs(to, position + 1, sum, sign, term * ints[position], child, match);
+			}
+			else{
+				stop = streamLhs(to, position + 1, solver.commit(sum, sign, term), c, ints[position], child, match);
+			}
+			if(stop){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//Streams the right-hand side in order from start, keeping the smallest left-hand ordinal matched
+	//and the first right-hand ordinal matching it, like StreamingJoin.
+	private boolean streamRhs(int to, int position, double sum, char sign, double term, long ordinal){
+		if(position == to){
+			if(overBudget()){
+				return true;
+			}
+			long lhs = stored.code(solver.commit(sum, sign, term));
+			next = ordinal + 1;
+			if(lhs >= 0 && lhs < bestLhs){
+				bestLhs = lhs;
+				bestRhs = ordinal;
+			}
+			return bestLhs == 0;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			long child = ordinal * operators.length + k;
+			if(searched(child, position + 1, to)){
+				continue;
+			}
+			boolean stop;
+			if(c == '*'){
+				stop = streamRhs(to, position + 1, sum, sign, term * ints[position], child);
+			}
+			else{
+				stop = streamRhs(to, position + 1, solver.commit(sum, sign, term), c, ints[position], child);
+			}
+			if(stop){
+				return true;
+			}
+		}
+		return false;
+	}
+}
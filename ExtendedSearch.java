@@ -0,0 +1,240 @@
+import java.util.Arrays;
+
+/**
+ * Solves puzzles with any operators from the evaluation config's registry, digit concatenation,
+ * and optionally parentheses, by interval dynamic programming over digit ranges.
+ * Each range keeps only its distinct values, so two ways of writing a range that give the same value
+ * are combined with everything else once instead of once each.
+ *
+ * Without parentheses the ranges are split by precedence level, the way the Shunting-Yard parser
+ * groups an expression: a level-l range is a level-(l+1) range, or a level-l operation whose operands
+ * are a level-l range on its associative side and a level-(l+1) range on the other. Every value is then
+ * computed with the same operations in the same order as evaluating its printed form. With parentheses
+ * there is a single level whose operands can be anything, and the printed form gets parentheses where
+ * the parser would otherwise group it differently.
+ */
+class ExtendedSearch {
+
+	//How an entry of a range was made, when it isn't an operation: a number or concatenation, or a value of the level above.
+	private static final int LEAF = -1, INHERITED = -2;
+
+	final int[] ints;
+	final char[] operators;
+	final Utils.FrozenEvaluationConfig config;
+	final boolean concatenate;
+	final boolean parenthesize;
+
+	//levelOperators[l] are the operators of level l, lowest precedence first; the last level holds only leaves.
+	private final char[][] levelOperators;
+	private final RangeSet[][][] sets;
+
+	/**
+	 * @param solver the solver whose operators, config and settings to use.
+	 * @param ints the numbers of the puzzle.
+	 * @throws IllegalArgumentException if an operator isn't registered in the config.
+	 */
+	ExtendedSearch(OperationInsertion solver, int[] ints){
+		this.ints = ints;
+		this.operators = solver.operators;
+		this.config = solver.config.freeze();
+		this.concatenate = solver.concatenate;
+		this.parenthesize = solver.parenthesize;
+		for (char c : operators) {
+			if(!config.isOperation(c)){
+				throw new IllegalArgumentException("Operator not registered: " + c);
+			}
+		}
+		if(parenthesize){
+			levelOperators = new char[][]{operators, {}};
+		}
+		else{
+			int[] precedences = new int[operators.length];
+			for (int i = 0; i < operators.length; i++) {
+				precedences[i] = config.precedences[operators[i]];
+			}
+			precedences = Arrays.stream(precedences).distinct().sorted().toArray();
+			levelOperators = new char[precedences.length + 1][];
+			for (int l = 0; l < precedences.length; l++) {
+				StringBuilder level = new StringBuilder();
+				for (char c : operators) {
+					if(config.precedences[c] == precedences[l]){
+						level.append(c);
+					}
+				}
+				levelOperators[l] = level.toString().toCharArray();
+			}
+			levelOperators[precedences.length] = new char[0];
+		}
+		sets = new RangeSet[levelOperators.length][ints.length + 1][ints.length + 1];
+	}
+
+	/**
+	 * The distinct values of one range at one level, with how each was first made.
+	 */
+	private static final class RangeSet {
+		final ValueIndex index = new ValueIndex(16);
+		double[] values = new double[16];
+		int[] splits = new int[16];
+		char[] ops = new char[16];
+		int[] lefts = new int[16];
+		int[] rights = new int[16];
+		int size;
+
+		void offer(double value, int split, char op, int left, int right){
+			//Infinities stay: the evaluator carries them on, e.g. 0^(3^7^5) is 0. Only the final match needs finite values.
+			if(Double.isNaN(value) || index.get(value) >= 0){
+				return;
+			}
+			if(size == values.length){
+				values = Arrays.copyOf(values, size * 2);
+				splits = Arrays.copyOf(splits, size * 2);
+				ops = Arrays.copyOf(ops, size * 2);
+				lefts = Arrays.copyOf(lefts, size * 2);
+				rights = Arrays.copyOf(rights, size * 2);
+			}
+			index.putIfAbsent(value, size);
+			values[size] = value;
+			splits[size] = split;
+			ops[size] = op;
+			lefts[size] = left;
+			rights[size] = right;
+			size++;
+		}
+	}
+
+	/**
+	 * Finds the first equation: the first split with a match, and in it the first left-hand value
+	 * the right-hand side can reach.
+	 * @return the equation, or null if there is none.
+	 */
+	String solve(){
+		int n = ints.length;
+		for (int e = 0; e < n - 1; e++) {
+			RangeSet lhs = set(0, 0, e + 1);
+			RangeSet rhs = set(0, e + 1, n);
+			for (int i = 0; i < lhs.size; i++) {
+				OperationInsertion.checkInterrupted(i);
+				if(Double.isInfinite(lhs.values[i])){
+					continue;
+				}
+				int j = rhs.index.get(lhs.values[i]);
+				if(j >= 0){
+					return render(0, 0, e + 1, i) + " = " + render(0, e + 1, n, j);
+				}
+			}
+		}
+		return null;
+	}
+
+	//The values of ints[a..b) at level l, built from the smaller ranges on first use.
+	private RangeSet set(int l, int a, int b){
+		if(sets[l][a][b] != null){
+			return sets[l][a][b];
+		}
+		RangeSet set = new RangeSet();
+		int leaves = levelOperators.length - 1;
+		if(l == leaves){
+			if(b - a == 1){
+				set.offer(ints[a], LEAF, '\0', 0, 0);
+			}
+			else if(concatenate && concatenable(a, b)){
+				set.offer(Double.parseDouble(concatenation(a, b)), LEAF, '\0', 0, 0);
+			}
+			sets[l][a][b] = set;
+			return set;
+		}
+		int inner = parenthesize ? l : l + 1;
+		if(!parenthesize){
+			RangeSet above = set(l + 1, a, b);
+			for (int i = 0; i < above.size; i++) {
+				set.offer(above.values[i], INHERITED, '\0', i, 0);
+			}
+		}
+		else{
+			RangeSet leaf = set(leaves, a, b);
+			for (int i = 0; i < leaf.size; i++) {
+				set.offer(leaf.values[i], LEAF, '\0', 0, 0);
+			}
+		}
+		for (int k = a + 1; k < b; k++) {
+			for (char op : levelOperators[l]) {
+				boolean right = config.rightAssociative[op];
+				RangeSet lefts = set(right ? inner : l, a, k);
+				RangeSet rights = set(right ? l : inner, k, b);
+				for (int x = 0; x < lefts.size; x++) {
+					double left = lefts.values[x];
+					for (int y = 0; y < rights.size; y++) {
+						OperationInsertion.checkInterrupted(y);
+						set.offer(config.apply(op, left, rights.values[y]), k, op, x, y);
+					}
+				}
+			}
+		}
+		sets[l][a][b] = set;
+		return set;
+	}
+
+	//Numbers after the first can't be concatenated if they are negative, since "1-2" doesn't read as one number.
+	private boolean concatenable(int a, int b){
+		for (int i = a + 1; i < b; i++) {
+			if(ints[i] < 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String concatenation(int a, int b){
+		StringBuilder builder = new StringBuilder();
+		for (int i = a; i < b; i++) {
+			builder.append(ints[i]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Writes out one entry of a range, with parentheses only where the parser would group it differently.
+	 */
+	private String render(int l, int a, int b, int i){
+		RangeSet set = sets[l][a][b];
+		int split = set.splits[i];
+		if(split == INHERITED){
+			return render(l + 1, a, b, set.lefts[i]);
+		}
+		if(split == LEAF){
+			return concatenation(a, b);
+		}
+		char op = set.ops[i];
+		boolean right = config.rightAssociative[op];
+		int inner = parenthesize ? l : l + 1;
+		int leftLevel = right ? inner : l, rightLevel = right ? l : inner;
+		String left = render(leftLevel, a, split, set.lefts[i]);
+		String rightText = render(rightLevel, split, b, set.rights[i]);
+		if(needsParentheses(root(leftLevel, a, split, set.lefts[i]), op, right)){
+			left = "(" + left + ")";
+		}
+		if(needsParentheses(root(rightLevel, split, b, set.rights[i]), op, !right)){
+			rightText = "(" + rightText + ")";
+		}
+		return left + op + rightText;
+	}
+
+	//An operand needs parentheses if its operation binds less tightly, or as tightly but on the side its parent doesn't associate to.
+	private boolean needsParentheses(char child, char parent, boolean otherSide){
+		if(child == '\0'){
+			return false;
+		}
+		int childPrecedence = config.precedences[child], parentPrecedence = config.precedences[parent];
+		return childPrecedence < parentPrecedence || (childPrecedence == parentPrecedence && otherSide);
+	}
+
+	//The operation at the top of an entry, or '\0' for a leaf.
+	private char root(int l, int a, int b, int i){
+		RangeSet set = sets[l][a][b];
+		while(set.splits[i] == INHERITED){
+			i = set.lefts[i];
+			set = sets[++l][a][b];
+		}
+		return set.splits[i] == LEAF ? '\0' : set.ops[i];
+	}
+}
@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A sort-merge join that keeps each side of a split off the heap, for puzzles too long for value arrays.
+ * Each side is enumerated into a direct buffer of (value bits, ordinal) records; whenever the buffer fills,
+ * it is sorted in place and spilled to a memory-mapped temp file as a run. The runs of both sides are then
+ * merged and joined in one streaming pass, so memory stays at the buffer budget plus whatever pages of the
+ * runs the OS keeps mapped in.
+ * The match is the one the other joins report: the smallest matching left-hand ordinal, then the
+ * smallest right-hand ordinal with the same value.
+ * The buffers are plain NIO direct and mapped LongBuffers: on the Java 17 this tree builds with,
+ * MemorySegment is only in the incubator module jdk.incubator.foreign, which would have to be added
+ * at compile and run time like jdk.incubator.vector is for vector/.
+ */
+class ExternalJoin {
+
+	static final int RECORD_LONGS = 2;
+	static final long DEFAULT_BUDGET = 64L << 20;
+
+	final OperationInsertion solver;
+	final int[] ints;
+	final int recordsPerRun;
+	long spilled;
+
+	private LongBuffer records;
+	private List<Run> runs;
+	private final List<Path> files = new ArrayList<>();
+
+	/**
+	 * @param solver the solver whose operators and enumeration are used.
+	 * @param ints the numbers of the puzzle.
+	 * @param budget how many bytes of records one side may hold before spilling, below 2 GB.
+	 */
+	ExternalJoin(OperationInsertion solver, int[] ints, long budget){
+		if(budget < 8 * RECORD_LONGS || budget > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Budget must be between 16 bytes and 2 GB: " + budget);
+		}
+		this.solver = solver;
+		this.ints = ints;
+		this.recordsPerRun = (int)(budget / (8 * RECORD_LONGS));
+	}
+
+	/**
+	 * A sorted run of records, either the buffer itself or a spilled file, read front to back.
+	 */
+	private static final class Run implements Comparable<Run> {
+		final LongBuffer records;
+		final int count;
+		int position;
+
+		Run(LongBuffer records, int count){
+			this.records = records;
+			this.count = count;
+		}
+
+		boolean done(){
+			return position == count;
+		}
+
+		long key(){
+			return records.get(position * RECORD_LONGS);
+		}
+
+		long ordinal(){
+			return records.get(position * RECORD_LONGS + 1);
+		}
+
+		@Override
+		public int compareTo(Run other){
+			int byKey = Long.compare(key(), other.key());
+			return byKey != 0 ? byKey : Long.compare(ordinal(), other.ordinal());
+		}
+	}
+
+	/**
+	 * Finds the first match of the split after e.
+	 * @param e the position of the last left-hand number.
+	 * @return the left-hand and right-hand ordinals, or null if there is no match.
+	 * @throws UncheckedIOException if the temp files can't be written.
+	 */
+	long[] join(int e){
+		try {
+			PriorityQueue<Run> lhs = side(0, e + 1);
+			PriorityQueue<Run> rhs = side(e + 1, ints.length);
+			long bestLhs = -1, bestRhs = -1;
+			for (long keys = 1; !lhs.isEmpty() && !rhs.isEmpty(); keys++) {
+				OperationInsertion.checkInterrupted(keys);
+				long lhsKey = lhs.peek().key(), rhsKey = rhs.peek().key();
+				if(lhsKey < rhsKey){
+					skip(lhs, lhsKey);
+				}
+				else if(rhsKey < lhsKey){
+					skip(rhs, rhsKey);
+				}
+				else{
+					//each group's first record has its smallest ordinal
+					long lhsOrdinal = lhs.peek().ordinal(), rhsOrdinal = rhs.peek().ordinal();
+					if(bestLhs < 0 || lhsOrdinal < bestLhs){
+						bestLhs = lhsOrdinal;
+						bestRhs = rhsOrdinal;
+					}
+					skip(lhs, lhsKey);
+					skip(rhs, rhsKey);
+				}
+			}
+			return bestLhs < 0 ? null : new long[]{bestLhs, bestRhs};
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			deleteFiles();
+		}
+	}
+
+	//Moves past every record with the given key.
+	private static void skip(PriorityQueue<Run> runs, long key){
+		while(!runs.isEmpty() && runs.peek().key() == key){
+			Run run = runs.poll();
+			run.position++;
+			while(!run.done() && run.key() == key){
+				run.position++;
+			}
+			if(!run.done()){
+				runs.add(run);
+			}
+		}
+	}
+
+	//Enumerates ints[from..to) into sorted runs, ready to be merged.
+	private PriorityQueue<Run> side(int from, int to) throws IOException {
+		long combinations = 1;
+		for (int i = from + 1; i < to && combinations < recordsPerRun; i++) {
+			combinations *= solver.operators.length;
+		}
+		int capacity = (int) Math.min(combinations, recordsPerRun);
+		records = ByteBuffer.allocateDirect(capacity * RECORD_LONGS * 8).asLongBuffer();
+		runs = new ArrayList<>();
+		enumerate(from + 1, to, 0, '\0', ints[from], 0);
+		int count = records.position() / RECORD_LONGS;
+		if(count > 0){
+			sort(records, 0, count - 1);
+			runs.add(new Run(records, count));
+		}
+		records = null;
+		PriorityQueue<Run> queue = new PriorityQueue<>();
+		for (Run run : runs) {
+			if(!run.done()){
+				queue.add(run);
+			}
+		}
+		return queue;
+	}
+
+	private void enumerate(int position, int to, double sum, char sign, double term, long ordinal) throws IOException {
+		if(position == to){
+			OperationInsertion.checkInterrupted(ordinal);
+			if(!records.hasRemaining()){
+				spill();
+			}
+			records.put(Double.doubleToLongBits(solver.commit(sum, sign, term))).put(ordinal);
+			return;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				enumerate(position + 1, to, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				enumerate(position + 1, to, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
+		}
+	}
+
+	//Sorts the full buffer, writes it to a mapped temp file as a run, and empties the buffer.
+	private void spill() throws IOException {
+		int count = records.position() / RECORD_LONGS;
+		sort(records, 0, count - 1);
+		Path file = Files.createTempFile("operation-insertion-run", ".bin");
+		files.add(file);
+		long bytes = (long) count * RECORD_LONGS * 8;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+			LongBuffer run = mapped.asLongBuffer();
+			records.flip();
+			run.put(records);
+			runs.add(new Run(run, count));
+		}
+		records.clear();
+		spilled += bytes;
+	}
+
+	private void deleteFiles(){
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException ex) {
+				file.toFile().deleteOnExit();
+			}
+		}
+		files.clear();
+		runs = null;
+	}
+
+	/*
+	In-place quicksort of records[low..high] by key, then ordinal, with insertion sort for short ranges.
+	The larger half is looped on rather than recursed into, so the stack stays logarithmic.
+	 */
+
+	private static void sort(LongBuffer records, int low, int high){
+		while(high - low > 16){
+			int middle = (low + high) >>> 1;
+			if(less(records, middle, low)){
+				swap(records, middle, low);
+			}
+			if(less(records, high, low)){
+				swap(records, high, low);
+			}
+			if(less(records, high, middle)){
+				swap(records, high, middle);
+			}
+			long pivotKey = records.get(middle * RECORD_LONGS), pivotOrdinal = records.get(middle * RECORD_LONGS + 1);
+			int i = low, j = high;
+			while(i <= j){
+				while(compare(records, i, pivotKey, pivotOrdinal) < 0){
+					i++;
+				}
+				while(compare(records, j, pivotKey, pivotOrdinal) > 0){
+					j--;
+				}
+				if(i <= j){
+					swap(records, i++, j--);
+				}
+			}
+			if(j - low < high - i){
+				sort(records, low, j);
+				low = i;
+			}
+			else{
+				sort(records, i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			for (int j = i; j > low && less(records, j, j - 1); j--) {
+				swap(records, j, j - 1);
+			}
+		}
+	}
+
+	private static int compare(LongBuffer records, int i, long key, long ordinal){
+		int byKey = Long.compare(records.get(i * RECORD_LONGS), key);
+		return byKey != 0 ? byKey : Long.compare(records.get(i * RECORD_LONGS + 1), ordinal);
+	}
+
+	private static boolean less(LongBuffer records, int i, int j){
+		return compare(records, i, records.get(j * RECORD_LONGS), records.get(j * RECORD_LONGS + 1)) < 0;
+	}
+
+	private static void swap(LongBuffer records, int i, int j){
+		long key = records.get(i * RECORD_LONGS), ordinal = records.get(i * RECORD_LONGS + 1);
+		records.put(i * RECORD_LONGS, records.get(j * RECORD_LONGS));
+		records.put(i * RECORD_LONGS + 1, records.get(j * RECORD_LONGS + 1));
+		records.put(j * RECORD_LONGS, key);
+		records.put(j * RECORD_LONGS + 1, ordinal);
+	}
+}
@@ -0,0 +1,97 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A load generator for the server mode: a number of connections, each sending puzzles one at a time
+ * and waiting for the answer, with the latency of every request recorded.
+ * Usage: java LoadClient <port | unix:path> <puzzle file> <connections> <requests per connection>
+ */
+class LoadClient {
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 4){
+			System.err.println("Usage: LoadClient <port | unix:path> <puzzle file> <connections> <requests per connection>");
+			System.exit(2);
+		}
+		String address = args[0];
+		List<String> puzzles = new ArrayList<>();
+		for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+			if(!line.trim().isEmpty()){
+				puzzles.add(line.trim());
+			}
+		}
+		int connections = Integer.parseInt(args[2]);
+		int requests = Integer.parseInt(args[3]);
+
+		long[] latencies = new long[connections * requests];
+		int[] busy = new int[connections], timeouts = new int[connections];
+		Thread[] threads = new Thread[connections];
+		long start = System.nanoTime();
+		for (int c = 0; c < connections; c++) {
+			int client = c;
+			threads[c] = new Thread(() -> {
+				try (SocketChannel channel = connect(address);
+					 BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+					 Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+					for (int r = 0; r < requests; r++) {
+						String puzzle = puzzles.get((client * requests + r) % puzzles.size());
+						long sent = System.nanoTime();
+						writer.write(puzzle);
+						writer.write('\n');
+						writer.flush();
+						String answer = reader.readLine();
+						latencies[client * requests + r] = System.nanoTime() - sent;
+						if(SolverServer.BUSY.equals(answer)){
+							busy[client]++;
+						}
+						else if(SolverServer.TIMEOUT.equals(answer)){
+							timeouts[client]++;
+						}
+					}
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+			threads[c].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		Arrays.sort(latencies);
+		System.out.printf("%d requests over %d connections in %.3f s, %.1f requests/s%n",
+				latencies.length, connections, seconds, latencies.length / seconds);
+		System.out.printf("p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+				percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6);
+		System.out.printf("%d busy, %d timed out%n", Arrays.stream(busy).sum(), Arrays.stream(timeouts).sum());
+	}
+
+	private static SocketChannel connect(String address) throws IOException {
+		if(address.startsWith("unix:")){
+			SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+			channel.connect(UnixDomainSocketAddress.of(address.substring("unix:".length())));
+			return channel;
+		}
+		return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+	}
+
+	//The nearest-rank percentile of sorted values.
+	private static long percentile(long[] sorted, double p){
+		int rank = (int) Math.ceil(p * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
@@ -1,85 +1,671 @@
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
 
 public class OperationInsertion {
 	
-	char[] operators = {'+', '-', '*'};
+	/**
+	 * How the values on either side of the equals sign get matched up.
+	 * NESTED compares every pair, HASH indexes the right side and probes it with the left side.
+	 * Both report the same equation.
+	 */
+	enum JoinMode { NESTED, HASH }
+	
+	static final char[] DEFAULT_OPERATORS = {'+', '-', '*'};
+	static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: java OperationInsertion [options] < puzzle",
+			"  search:  --operators=CHARS --concat --parens --exact --nested-join --parallel --deterministic",
+			"           --memoize --dedup --prune --external[=MB] --vector",
+			"  output:  --all --count --top=K",
+			"  budget:  --deadline=MS --heap-budget=MB --resume=CHECKPOINT",
+			"  batch:   --batch[=FILE] --cache=N --cache-file=FILE",
+			"  server:  --server=PORT|unix:PATH --timeout=MS --max-in-flight=N",
+			"  metrics: --metrics --metrics-dump=SECONDS");
+	//Puzzles longer than this are hash joined without materializing both sides' value arrays.
+	static final int STREAMING_LENGTH = 12;
+	//How many combinations the enumerations and joins go through between two checks for interruption.
+	static final int CHECK_INTERVAL = 1 << 12;
+	
+	char[] operators = DEFAULT_OPERATORS;
+	JoinMode joinMode = JoinMode.HASH;
+	Utils.ShuntingEvaluationConfig config = Utils.ShuntingEvaluationConfig.createDefault();
+	ParallelSolver parallelSolver;
+	boolean memoize;
+	boolean prune;
+	SolutionCache cache;
+	boolean concatenate;
+	boolean parenthesize;
+	long externalBudget;
+	BatchEvaluator batchEvaluator;
+	final DoubleAdder memoRepresented = new DoubleAdder();
+	final LongAdder memoKept = new LongAdder();
 	
 	public OperationInsertion(){
-		int[] ints = Utils.stringToInts(Utils.getString());
-		boolean printed = false;
-		
-		n : for (int e = 0; e < ints.length - 1; e++) {//place equals sign after e
-			char[] lhs = toCharArray(Arrays.copyOfRange(ints, 0, e+1));
-			char[] rhs = toCharArray(Arrays.copyOfRange(ints, e+1, ints.length));
-			ArrayList<Utils.Pair<Double, String>> lhsCombs = getCombs(lhs);
-			//System.out.println(Arrays.toString(rhs));
-			ArrayList<Utils.Pair<Double, String>> rhsCombs = getCombs(rhs);
-			
-			for (int i = 0; i < lhsCombs.size(); i++) {
-				for (int j = 0; j < rhsCombs.size(); j++) {
-					if(lhsCombs.get(i).equalsFirst(rhsCombs.get(j), (a,b) -> Double.compare(a, b))){
-						System.out.println(lhsCombs.get(i).second + " = " + rhsCombs.get(j).second);
-						printed = true;
-						break n;
-					}
+		this(JoinMode.HASH);
+	}
+	
+	public OperationInsertion(JoinMode joinMode){
+		this.joinMode = joinMode;
+		printSolution(Utils.stringToInts(Utils.getString()));
+	}
+	
+	/**
+	 * Creates a solver without reading a puzzle, for callers that pass their own numbers to solve.
+	 */
+	OperationInsertion(char[] operators){
+		this.operators = operators;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		OperationInsertion solver = new OperationInsertion(DEFAULT_OPERATORS);
+		boolean parallel = false, deterministic = false, batch = false, all = false, count = false;
+		int top = 0, cacheSize = 0, maxInFlight = 64;
+		long timeout = 10000, metricsDump = 0, deadline = 0, heapBudget = 0;
+		boolean metrics = false, dedup = false, vector = false;
+		String batchFile = null, cacheFile = null, server = null, resume = null;
+		for (String arg : args) {
+			if(arg.equals("--nested-join")){
+				solver.joinMode = JoinMode.NESTED;
+			}
+			else if(arg.equals("--batch")){
+				batch = true;
+			}
+			else if(arg.startsWith("--batch=")){
+				batch = true;
+				batchFile = arg.substring("--batch=".length());
+			}
+			else if(arg.equals("--parallel")){
+				parallel = true;
+			}
+			else if(arg.equals("--deterministic")){
+				deterministic = true;
+			}
+			else if(arg.equals("--memoize")){
+				solver.memoize = true;
+			}
+			else if(arg.equals("--dedup")){
+				solver.memoize = true;
+				dedup = true;
+			}
+			else if(arg.equals("--external")){
+				solver.externalBudget = ExternalJoin.DEFAULT_BUDGET;
+			}
+			else if(arg.startsWith("--external=")){
+				long megabytes = Long.parseLong(arg.substring("--external=".length()));
+				if(megabytes < 1 || megabytes > Integer.MAX_VALUE >> 20){
+					usage("--external takes a budget from 1 to " + (Integer.MAX_VALUE >> 20) + " MB");
 				}
+				solver.externalBudget = megabytes << 20;
+			}
+			else if(arg.equals("--vector")){
+				vector = true;
+			}
+			else if(arg.equals("--prune")){
+				solver.prune = true;
+			}
+			else if(arg.equals("--exact")){
+				solver.config.arithmetic(Utils.ShuntingArithmetic.EXACT);
+			}
+			else if(arg.startsWith("--operators=")){
+				solver.operators = arg.substring("--operators=".length()).toCharArray();
+			}
+			else if(arg.equals("--concat")){
+				solver.concatenate = true;
+			}
+			else if(arg.equals("--parens")){
+				solver.parenthesize = true;
+			}
+			else if(arg.equals("--all")){
+				all = true;
+			}
+			else if(arg.equals("--count")){
+				count = true;
+			}
+			else if(arg.startsWith("--cache=")){
+				cacheSize = Integer.parseInt(arg.substring("--cache=".length()));
+			}
+			else if(arg.startsWith("--cache-file=")){
+				cacheFile = arg.substring("--cache-file=".length());
+			}
+			else if(arg.startsWith("--server=")){
+				server = arg.substring("--server=".length());
+			}
+			else if(arg.startsWith("--timeout=")){
+				timeout = Long.parseLong(arg.substring("--timeout=".length()));
+			}
+			else if(arg.startsWith("--max-in-flight=")){
+				maxInFlight = Integer.parseInt(arg.substring("--max-in-flight=".length()));
+			}
+			else if(arg.equals("--metrics")){
+				metrics = true;
+			}
+			else if(arg.startsWith("--metrics-dump=")){
+				metrics = true;
+				metricsDump = Long.parseLong(arg.substring("--metrics-dump=".length()));
+			}
+			else if(arg.startsWith("--deadline=")){
+				deadline = Long.parseLong(arg.substring("--deadline=".length()));
+			}
+			else if(arg.startsWith("--heap-budget=")){
+				heapBudget = Long.parseLong(arg.substring("--heap-budget=".length())) << 20;
+			}
+			else if(arg.startsWith("--resume=")){
+				resume = arg.substring("--resume=".length());
+			}
+			else if(arg.startsWith("--top=")){
+				top = Integer.parseInt(arg.substring("--top=".length()));
+			}
+			else{
+				usage("Unknown argument: " + arg);
 			}
 		}
-		
-		if(!printed){
-			System.out.println("No equation possible.");
+		if(solver.operators.length == 0){
+			usage("--operators needs at least one operator");
+		}
+		for (char c : solver.operators) {
+			if(!solver.config.freeze().isOperation(c)){
+				usage("Unknown operator '" + c + "' in --operators, the operators are + - * / and ^");
+			}
+		}
+		if(vector){
+			solver.batchEvaluator = BatchEvaluator.create(solver.operators);
+			if(!solver.batchEvaluator.vectorized()){
+				System.err.println("Vector API not available, evaluating combinations in scalar blocks.");
+			}
+		}
+		if(parallel){
+			solver.parallelSolver = new ParallelSolver(solver, ForkJoinPool.commonPool(), deterministic);
+		}
+		if(metrics){
+			SolverMetrics.enabled = true;
+			try {
+				SolverMetrics.register();
+			} catch (JMException ex) {
+				System.err.println("Metrics are not available over JMX: " + ex);
+			}
+			if(metricsDump > 0){
+				SolverMetrics.startDump(metricsDump);
+			}
+		}
+		Path cachePath = cacheFile == null ? null : Paths.get(cacheFile);
+		if(cacheSize > 0 || cachePath != null){
+			solver.cache = new SolutionCache(cacheSize > 0 ? cacheSize : SolutionCache.DEFAULT_RESULTS, SolutionCache.DEFAULT_RANGE_VALUES);
+			if(cachePath != null){
+				try {
+					solver.cache.load(cachePath);
+				} catch (IOException ex) {
+					//Start with an empty cache and leave the file as it is rather than overwriting it
+					System.err.println("Ignoring cache file: " + ex.getMessage());
+					cachePath = null;
+				}
+			}
+		}
+		if(server != null){
+			SolverServer listener = new SolverServer(solver, timeout, maxInFlight);
+			listener.bind(server);
+			listener.serve();
+		}
+		else if(all || count || top > 0){
+			if(solver.extended() || solver.config.arithmetic == Utils.ShuntingArithmetic.EXACT){
+				usage("--all, --count and --top only enumerate + - and * in double arithmetic, without --concat, --parens or --exact");
+			}
+			solver.printSolutions(Utils.stringToInts(Utils.getString()), all, count, top);
+		}
+		else if(batch){
+			new BatchSolver(solver).run(batchFile);
+		}
+		else if(deadline > 0 || heapBudget > 0 || resume != null){
+			if(solver.extended() || solver.config.arithmetic == Utils.ShuntingArithmetic.EXACT){
+				usage("--deadline, --heap-budget and --resume only search + - and *, without --concat, --parens or --exact");
+			}
+			BudgetedSolver.Checkpoint from = null;
+			if(resume != null){
+				try {
+					from = BudgetedSolver.Checkpoint.parse(resume);
+				} catch (IllegalArgumentException ex) {
+					usage("Not a checkpoint: " + resume);
+				}
+			}
+			solver.printBudgeted(Utils.stringToInts(Utils.getString()), deadline > 0 ? deadline : Long.MAX_VALUE / 1_000_000,
+					heapBudget > 0 ? heapBudget : Long.MAX_VALUE, from);
+		}
+		else{
+			solver.printSolution(Utils.stringToInts(Utils.getString()));
+		}
+		if(cachePath != null){
+			solver.cache.save(cachePath);
+		}
+		if(metrics){
+			System.err.println(SolverMetrics.INSTANCE.summary());
+		}
+		if(dedup){
+			System.err.println(solver.dedupReport());
 		}
 	}
 	
-	public static void main(String[] args){
-		new OperationInsertion();
+	//Prints what went wrong with the arguments and the arguments there are, then exits.
+	static void usage(String problem){
+		System.err.println(problem);
+		System.err.println(USAGE);
+		System.exit(2);
 	}
 	
-	ArrayList<Utils.Pair<Double, String>> getCombs(char[] expr){
-		ArrayList<Utils.Pair<Double, String>> array = new ArrayList<Utils.Pair<Double, String>>();
-		getCombinations(array, expr);
-		return array;
+	void printSolution(int[] ints){
+		String equation = solve(ints);
+		if(equation == null){
+			System.out.println("No equation possible.");
+		}
+		else{
+			System.out.println(equation);
+		}
 	}
 	
-	void getCombinations(ArrayList<Utils.Pair<Double, String>> currentList, char[] expr){
-		String str = charToStr(expr);
-		if(expr.length==1){
-			currentList.add(new Utils.Pair<Double, String>((double)(expr[0]+'0'), ""+expr[0]));
+	//Prints the equation, or how far the search got and where to resume it from.
+	void printBudgeted(int[] ints, long millis, long heapBytes, BudgetedSolver.Checkpoint from){
+		BudgetedSolver.Result result;
+		try {
+			result = new BudgetedSolver(this, ints, millis, heapBytes).solve(from);
+		} catch (IllegalArgumentException ex) {
+			//The checkpoint was written for another puzzle or other operators.
+			usage(ex.getMessage());
 			return;
 		}
-		int index = str.indexOf(0);
-		if(index==str.lastIndexOf(0)){
-			for (char c : operators) {
-				char[] newExpr = Arrays.copyOf(expr, expr.length);
-				newExpr[index] = c;
-				String fullStr = charToStr(newExpr);
-				//System.out.println(fullStr);
-				currentList.add(new Utils.Pair<Double, String>(Utils.evaluateExpression(fullStr, Utils.ShuntingEvaluationConfig.createDefault()), fullStr));
+		if(result.status == BudgetedSolver.Status.SOLVED){
+			System.out.println(result.equation);
+		}
+		else if(result.status == BudgetedSolver.Status.UNSOLVABLE){
+			System.out.println("No equation possible.");
+		}
+		else{
+			System.out.println("Budget exhausted after " + result.splits + " splits and " + result.prefixes
+					+ " prefixes of the next; resume with --resume=" + result.checkpoint);
+		}
+	}
+	
+	//Prints every equation, their number, or the top simplest ones, one per line.
+	void printSolutions(int[] ints, boolean all, boolean count, int top){
+		Solutions solutions = new Solutions(this);
+		if(count){
+			System.out.println(solutions.count(ints));
+		}
+		else if(top > 0){
+			for (Solution solution : solutions.top(ints, top, Solution.SIMPLEST)) {
+				System.out.println(solution.equation());
 			}
 		}
 		else{
-			for (char c : operators) {
-				char[] newExpr = Arrays.copyOf(expr, expr.length);
-				newExpr[index] = c;
-				getCombinations(currentList, newExpr);
+			solutions.stream(ints).map(Solution::equation).forEach(System.out::println);
+		}
+	}
+	
+	String solve(int[] ints){
+		if(!SolverMetrics.enabled){
+			return solveCached(ints);
+		}
+		long start = System.nanoTime();
+		String equation = solveCached(ints);
+		SolverMetrics.INSTANCE.puzzle(ints, equation != null, System.nanoTime() - start);
+		return equation;
+	}
+	
+	String solveCached(int[] ints){
+		if(cache == null){
+			return solveUncached(ints);
+		}
+		SolutionCache.Key key = SolutionCache.key(this, ints);
+		String cached = cache.get(key);
+		if(cached != null){
+			return SolutionCache.equation(cached);
+		}
+		String equation = solveUncached(ints);
+		cache.put(key, equation);
+		return equation;
+	}
+	
+	String solveUncached(int[] ints){
+		if(extended()){
+			return new ExtendedSearch(this, ints).solve();
+		}
+		boolean exact = config.arithmetic == Utils.ShuntingArithmetic.EXACT;
+		if(parallelSolver != null && !exact){
+			return parallelSolver.solve(ints);
+		}
+		//Operators other than exactly + - * fall back to the plain enumeration.
+		RangeMemo memo = memoize && RangeMemo.supports(ints, operators) ? new RangeMemo(ints, operators) : null;
+		if(memo != null && exact && !memo.exact()){
+			memo = null;
+		}
+		PrunedSearch search = prune && !exact ? new PrunedSearch(this, ints) : null;
+		String found = null;
+		for (int e = 0; e < ints.length - 1; e++) {//place equals sign after e
+			checkInterrupted(0);
+			long start = SolverMetrics.enabled ? System.nanoTime() : 0;
+			long[] match = join(ints, e, exact, memo, search);
+			if(SolverMetrics.enabled){
+				SolverMetrics.INSTANCE.split(e, System.nanoTime() - start);
+			}
+			if(match != null){
+				found = equation(ints, e, match[0], match[1]);
+				break;
 			}
 		}
+		if(memo != null){
+			memoRepresented.add(memo.represented);
+			memoKept.add(memo.kept);
+		}
+		return found;
 	}
 	
-	String charToStr(char[] array){
-		StringBuilder builder = new StringBuilder();
-		for (int i = 0; i < array.length; i++) {
-			builder.append(array[i]);
+	//How much smaller the memoized value sets were than the assignments they stand for, over every puzzle so far.
+	String dedupReport(){
+		double represented = memoRepresented.sum();
+		long kept = memoKept.sum();
+		if(kept == 0){
+			return "dedup: nothing memoized, the memo only knows + - and * on at most " + (RangeMemo.MAX_SLOTS + 1) + " numbers";
 		}
-		return builder.toString();
+		return String.format("dedup: %.0f operator assignments kept as %d distinct values, %.1fx smaller",
+				represented, kept, represented / kept);
+	}
+	
+	//Whether the puzzle needs the extended search: the enumeration below only knows + - and *.
+	boolean extended(){
+		if(concatenate || parenthesize){
+			return true;
+		}
+		for (char c : operators) {
+			if(c != '+' && c != '-' && c != '*'){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//Finds the first match of one split with whichever method is switched on.
+	long[] join(int[] ints, int e, boolean exact, RangeMemo memo, PrunedSearch search){
+		if(memo != null){
+			RangeValues rhs = memo.suffix(e+1);
+			if(rhs.exact){
+				return memoJoin(memo.prefix(e+1), rhs);
+			}
+		}
+		if(exact){
+			return ordinals(exactJoin(ints, e));
+		}
+		if(search != null){
+			long visited = search.visited;
+			long[] match = search.join(e);
+			if(SolverMetrics.enabled){
+				SolverMetrics.INSTANCE.combinations.add(search.visited - visited);
+			}
+			return match;
+		}
+		if(externalBudget > 0){
+			return new ExternalJoin(this, ints, externalBudget).join(e);
+		}
+		//Ranges the cache can't keep aren't worth materializing for it.
+		boolean cacheLhs = cache != null && cache.keeps(this, e+1);
+		boolean cacheRhs = cache != null && cache.keeps(this, ints.length - e - 1);
+		if(joinMode == JoinMode.HASH && (ints.length > STREAMING_LENGTH || cache != null && !(cacheLhs && cacheRhs))){
+			return new StreamingJoin(this, ints).join(e);
+		}
+		double[] lhsValues = cacheLhs ? cache.values(this, ints, 0, e+1) : getValues(ints, 0, e+1);
+		double[] rhsValues = cacheRhs ? cache.values(this, ints, e+1, ints.length) : getValues(ints, e+1, ints.length);
+		return ordinals(joinMode == JoinMode.NESTED ? nestedJoin(lhsValues, rhsValues) : hashJoin(lhsValues, rhsValues));
+	}
+	
+	//Stops the solve if its thread was interrupted, as SolverServer does when a request times out.
+	//Only checks when count is a multiple of CHECK_INTERVAL, so loops can pass their counter.
+	static void checkInterrupted(long count){
+		if((count & (CHECK_INTERVAL - 1)) == 0 && Thread.currentThread().isInterrupted()){
+			throw new CancellationException("Solve interrupted");
+		}
+	}
+	
+	long[] ordinals(int[] match){
+		return match == null ? null : new long[]{match[0], match[1]};
+	}
+	
+	String equation(int[] ints, int e, long lhsOrdinal, long rhsOrdinal){
+		return expression(ints, 0, e+1, lhsOrdinal) + " = " + expression(ints, e+1, ints.length, rhsOrdinal);
+	}
+	
+	int[] nestedJoin(double[] lhsValues, double[] rhsValues){
+		for (int i = 0; i < lhsValues.length; i++) {
+			checkInterrupted(0);
+			for (int j = 0; j < rhsValues.length; j++) {
+				if(Double.compare(lhsValues[i], rhsValues[j]) == 0){
+					comparisons((long)i * rhsValues.length + j + 1);
+					return new int[]{i, j};
+				}
+			}
+		}
+		comparisons((long)lhsValues.length * rhsValues.length);
+		return null;
+	}
+	
+	//Same answer as nestedJoin: the index keeps the first right-hand position of every value,
+	//and the left-hand side is probed in order.
+	int[] hashJoin(double[] lhsValues, double[] rhsValues){
+		ValueIndex index = new ValueIndex(rhsValues.length);
+		for (int j = 0; j < rhsValues.length; j++) {
+			checkInterrupted(j);
+			index.putIfAbsent(rhsValues[j], j);
+		}
+		for (int i = 0; i < lhsValues.length; i++) {
+			checkInterrupted(i);
+			int j = index.get(lhsValues[i]);
+			if(j >= 0){
+				comparisons(i + 1);
+				return new int[]{i, j};
+			}
+		}
+		comparisons(lhsValues.length);
+		return null;
+	}
+	
+	private static void comparisons(long count){
+		if(SolverMetrics.enabled){
+			SolverMetrics.INSTANCE.joinComparisons.add(count);
+		}
+	}
+	
+	//Same answer as the other joins: every left-hand code reaching a value has a match if any does,
+	//so the smallest matching left-hand code is the first position the nested loop would stop at.
+	long[] memoJoin(RangeValues lhs, RangeValues rhs){
+		long best = -1;
+		for (int slot = 0; slot < lhs.capacity(); slot++) {
+			checkInterrupted(slot);
+			if(lhs.used(slot) && (best < 0 || lhs.codeAt(slot) < best) && rhs.code(lhs.valueAt(slot)) >= 0){
+				best = lhs.codeAt(slot);
+			}
+		}
+		if(best < 0){
+			return null;
+		}
+		for (int slot = 0; slot < lhs.capacity(); slot++) {
+			if(lhs.used(slot) && lhs.codeAt(slot) == best){
+				return new long[]{best, rhs.code(lhs.valueAt(slot))};
+			}
+		}
+		return null;
+	}
+	
+	//Joins one split on exact values: longs while nothing overflows, BigIntegers otherwise.
+	int[] exactJoin(int[] ints, int e){
+		try {
+			long[] lhsValues = new long[combinations(e+1)];
+			long[] rhsValues = new long[combinations(ints.length - e - 1)];
+			getExactCombinations(lhsValues, ints, 1, e+1, 0, '\0', ints[0], 0);
+			getExactCombinations(rhsValues, ints, e+2, ints.length, 0, '\0', ints[e+1], 0);
+			if(SolverMetrics.enabled){
+				SolverMetrics.INSTANCE.combinations.add(lhsValues.length + rhsValues.length);
+			}
+			ValueIndex index = new ValueIndex(rhsValues.length);
+			for (int j = 0; j < rhsValues.length; j++) {
+				checkInterrupted(j);
+				index.putIfAbsent(rhsValues[j], j);
+			}
+			for (int i = 0; i < lhsValues.length; i++) {
+				checkInterrupted(i);
+				int j = index.get(lhsValues[i]);
+				if(j >= 0){
+					return new int[]{i, j};
+				}
+			}
+			return null;
+		} catch (ArithmeticException overflow) {
+			BigInteger[] lhsValues = new BigInteger[combinations(e+1)];
+			BigInteger[] rhsValues = new BigInteger[combinations(ints.length - e - 1)];
+			getBigCombinations(lhsValues, ints, 1, e+1, BigInteger.ZERO, '\0', BigInteger.valueOf(ints[0]), 0);
+			getBigCombinations(rhsValues, ints, e+2, ints.length, BigInteger.ZERO, '\0', BigInteger.valueOf(ints[e+1]), 0);
+			HashMap<BigInteger, Integer> index = new HashMap<>();
+			for (int j = 0; j < rhsValues.length; j++) {
+				checkInterrupted(j);
+				index.putIfAbsent(rhsValues[j], j);
+			}
+			for (int i = 0; i < lhsValues.length; i++) {
+				checkInterrupted(i);
+				Integer j = index.get(lhsValues[i]);
+				if(j != null){
+					return new int[]{i, j};
+				}
+			}
+			return null;
+		}
+	}
+	
+	//getCombinations on longs, throwing ArithmeticException on overflow.
+	void getExactCombinations(long[] values, int[] ints, int position, int to, long sum, char sign, long term, int ordinal){
+		if(position == to){
+			checkInterrupted(ordinal);
+			values[ordinal] = commitExact(sum, sign, term);
+			return;
+		}
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				getExactCombinations(values, ints, position + 1, to, sum, sign, Math.multiplyExact(term, ints[position]), ordinal * operators.length + k);
+			}
+			else{
+				getExactCombinations(values, ints, position + 1, to, commitExact(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
+		}
+	}
+	
+	long commitExact(long sum, char sign, long term){
+		if(sign == '+'){
+			return Math.addExact(sum, term);
+		}
+		else if(sign == '-'){
+			return Math.subtractExact(sum, term);
+		}
+		return term;
+	}
+	
+	//getCombinations on BigIntegers, for when longs overflow.
+	void getBigCombinations(BigInteger[] values, int[] ints, int position, int to, BigInteger sum, char sign, BigInteger term, int ordinal){
+		if(position == to){
+			checkInterrupted(ordinal);
+			values[ordinal] = commitBig(sum, sign, term);
+			return;
+		}
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				getBigCombinations(values, ints, position + 1, to, sum, sign, term.multiply(BigInteger.valueOf(ints[position])), ordinal * operators.length + k);
+			}
+			else{
+				getBigCombinations(values, ints, position + 1, to, commitBig(sum, sign, term), c, BigInteger.valueOf(ints[position]), ordinal * operators.length + k);
+			}
+		}
+	}
+	
+	BigInteger commitBig(BigInteger sum, char sign, BigInteger term){
+		if(sign == '+'){
+			return sum.add(term);
+		}
+		else if(sign == '-'){
+			return sum.subtract(term);
+		}
+		return term;
+	}
+	
+	/**
+	 * Evaluates every way of putting operators between ints[from..to).
+	 * The value at position p belongs to the combination whose operators are the base-3 digits of p,
+	 * most significant first, each digit indexing into operators.
+	 */
+	double[] getValues(int[] ints, int from, int to){
+		double[] values = new double[combinations(to - from)];
+		getCombinations(values, ints, from + 1, to, 0, '\0', ints[from], 0);
+		if(SolverMetrics.enabled){
+			SolverMetrics.INSTANCE.combinations.add(values.length);
+		}
+		return values;
 	}
 	
-	char[] toCharArray(int[] array){//With spaces for operators
-		StringBuilder builder = new StringBuilder("" + array[0]);
-		for (int i = 1; i < array.length; i++) {
-			builder.append('\0').append(""+array[i]);
+	//sum holds the terms committed so far, term is the product still being built, sign is how term joins sum.
+	//Each step is the same floating point operation the Shunting-Yard evaluator would do, in the same order.
+	//With a batch evaluator the whole subtree is handed to it, which gives the same values.
+	void getCombinations(double[] values, int[] ints, int position, int to, double sum, char sign, double term, int ordinal){
+		if(batchEvaluator != null){
+			batchEvaluator.fill(values, ints, position, to, sum, sign, term, ordinal);
+			return;
+		}
+		if(position == to){
+			checkInterrupted(ordinal);
+			values[ordinal] = commit(sum, sign, term);
+			return;
+		}
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				getCombinations(values, ints, position + 1, to, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				getCombinations(values, ints, position + 1, to, commit(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
 		}
-		return builder.toString().toCharArray();
+	}
+	
+	double commit(double sum, char sign, double term){
+		if(sign == '+'){
+			return sum + term;
+		}
+		else if(sign == '-'){
+			return sum - term;
+		}
+		return term;
+	}
+	
+	int combinations(int length){
+		long count = 1;
+		for (int i = 1; i < length; i++) {
+			count *= operators.length;
+			if(count > Integer.MAX_VALUE - 8){
+				throw new IllegalArgumentException("Too many combinations for " + length + " numbers");
+			}
+		}
+		return (int)count;
+	}
+	
+	String expression(int[] ints, int from, int to, long ordinal){
+		char[] ops = new char[to - from];
+		for (int i = to - 1; i > from; i--) {
+			ops[i - from] = operators[(int)(ordinal % operators.length)];
+			ordinal /= operators.length;
+		}
+		StringBuilder builder = new StringBuilder().append(ints[from]);
+		for (int i = from + 1; i < to; i++) {
+			builder.append(ops[i - from]).append(ints[i]);
+		}
+		return builder.toString();
 	}
 }
\ No newline at end of file
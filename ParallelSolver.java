@@ -0,0 +1,316 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Solves puzzles on a ForkJoinPool, splitting the work across equals-sign positions,
+ * across operator-prefix subtrees of the enumeration, and across chunks of the join.
+ * As soon as a split finds an equation, the splits that can no longer matter are cancelled:
+ * in deterministic mode those are the later splits, so the equation reported is the one
+ * the sequential solver prints, otherwise it is every other split. Interrupting the thread that
+ * called solve cancels every split the same way.
+ */
+class ParallelSolver {
+
+	/**
+	 * Subtrees with at most this many leaves are enumerated on the current thread.
+	 */
+	static final int SEQUENTIAL_LEAVES = 1 << 13;
+	/**
+	 * Left-hand chunks of at most this many values are probed on the current thread.
+	 */
+	static final int SEQUENTIAL_PROBES = 1 << 14;
+	/**
+	 * Splits are started in order, in batches holding at most this many values between them (128 MB of doubles),
+	 * so that a long puzzle doesn't allocate the value arrays of every split at once. A split with more values
+	 * than this is joined by a StreamingJoin instead, which only stores the distinct values of its smaller side.
+	 */
+	static final long VALUES_IN_FLIGHT = 1 << 24;
+
+	final OperationInsertion solver;
+	final ForkJoinPool pool;
+	final boolean deterministic;
+
+	/**
+	 * Creates a parallel solver.
+	 * @param solver the solver whose operators, join mode and enumeration are used.
+	 * @param pool the pool to run on.
+	 * @param deterministic whether to always report the equation the sequential solver would.
+	 */
+	ParallelSolver(OperationInsertion solver, ForkJoinPool pool, boolean deterministic){
+		this.solver = solver;
+		this.pool = pool;
+		this.deterministic = deterministic;
+	}
+
+	/**
+	 * Finds an equation for the given numbers.
+	 * @param ints the numbers of the puzzle.
+	 * @return the equation, or null if there is none.
+	 * @throws CancellationException if the thread is interrupted.
+	 */
+	String solve(int[] ints){
+		Search search = new Search(ints);
+		try {
+			pool.submit(search).get();
+		} catch (InterruptedException ex) {
+			//the tasks check this between chunks, so they wind down without anyone joining them
+			search.abandoned = true;
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Solve interrupted");
+		} catch (ExecutionException ex) {
+			if(ex.getCause() instanceof RuntimeException){
+				throw (RuntimeException) ex.getCause();
+			}
+			if(ex.getCause() instanceof Error){
+				throw (Error) ex.getCause();
+			}
+			throw new IllegalStateException(ex.getCause());
+		}
+		int e = search.bestSplit.get();
+		if(e == Integer.MAX_VALUE){
+			return null;
+		}
+		long[] match = search.matches.get(e);
+		return solver.equation(ints, e, match[0], match[1]);
+	}
+
+	/**
+	 * The shared state of one puzzle: which split has the best match so far, and the matches themselves.
+	 */
+	@SuppressWarnings("serial")
+	private class Search extends RecursiveAction {
+		final int[] ints;
+		final AtomicInteger bestSplit = new AtomicInteger(Integer.MAX_VALUE);
+		final AtomicReferenceArray<long[]> matches;
+		volatile boolean abandoned;
+
+		Search(int[] ints){
+			this.ints = ints;
+			this.matches = new AtomicReferenceArray<>(Math.max(0, ints.length - 1));
+		}
+
+		@Override
+		protected void compute(){
+			List<SplitTask> tasks = new ArrayList<>();
+			long values = 0;
+			for (int e = 0; e < ints.length - 1; e++) {
+				long lhs = values(e + 1), rhs = values(ints.length - e - 1);
+				long size = lhs + rhs <= VALUES_IN_FLIGHT ? lhs + rhs : Math.min(lhs, rhs);
+				if(!tasks.isEmpty() && values + size > VALUES_IN_FLIGHT){
+					invokeAll(tasks);
+					tasks.clear();
+					values = 0;
+				}
+				if(cancelled(e)){
+					return;
+				}
+				tasks.add(new SplitTask(this, e));
+				values += size;
+			}
+			invokeAll(tasks);
+		}
+
+		boolean cancelled(int e){
+			if(abandoned){
+				return true;
+			}
+			int best = bestSplit.get();
+			return deterministic ? best < e : best != Integer.MAX_VALUE;
+		}
+
+		//How many values a range of length numbers has, or VALUES_IN_FLIGHT + 1 if that is more.
+		long values(int length){
+			long count = 1;
+			for (int i = 1; i < length && count <= VALUES_IN_FLIGHT; i++) {
+				count *= solver.operators.length;
+			}
+			return Math.min(count, VALUES_IN_FLIGHT + 1);
+		}
+
+		void found(int e, long[] match){
+			matches.set(e, match);
+			bestSplit.accumulateAndGet(e, Math::min);
+		}
+	}
+
+	/**
+	 * Enumerates both sides of one split point in parallel, then joins them.
+	 */
+	@SuppressWarnings("serial")
+	private class SplitTask extends RecursiveAction {
+		final Search search;
+		final int e;
+
+		SplitTask(Search search, int e){
+			this.search = search;
+			this.e = e;
+		}
+
+		@Override
+		protected void compute(){
+			if(search.cancelled(e)){
+				return;
+			}
+			int[] ints = search.ints;
+			if(search.values(e + 1) + search.values(ints.length - e - 1) > VALUES_IN_FLIGHT){
+				try {
+					long[] match = new StreamingJoin(solver, ints, () -> search.cancelled(e)).join(e);
+					if(match != null){
+						search.found(e, match);
+					}
+				} catch (CancellationException ex) {
+					//an earlier split already decided the answer, or the solve was abandoned
+				}
+				return;
+			}
+			double[] lhsValues = new double[solver.combinations(e + 1)];
+			double[] rhsValues = new double[solver.combinations(ints.length - e - 1)];
+			invokeAll(new ValuesTask(search, e, lhsValues, 1, 0, '\0', ints[0], 0),
+					new ValuesTask(search, e, rhsValues, e + 2, 0, '\0', ints[e + 1], 0));
+			if(SolverMetrics.enabled){
+				SolverMetrics.INSTANCE.combinations.add(lhsValues.length + rhsValues.length);
+			}
+			if(search.cancelled(e)){
+				return;
+			}
+
+			ValueIndex index = null;
+			if(solver.joinMode == OperationInsertion.JoinMode.HASH){
+				index = new ValueIndex(rhsValues.length);
+				for (int j = 0; j < rhsValues.length; j++) {
+					if((j & (OperationInsertion.CHECK_INTERVAL - 1)) == 0 && search.cancelled(e)){
+						return;
+					}
+					index.putIfAbsent(rhsValues[j], j);
+				}
+			}
+			AtomicInteger firstLhs = new AtomicInteger(Integer.MAX_VALUE);
+			new ProbeTask(search, e, lhsValues, rhsValues, index, firstLhs, 0, lhsValues.length).invoke();
+			int i = firstLhs.get();
+			if(i != Integer.MAX_VALUE){
+				search.found(e, new long[]{i, firstMatch(lhsValues[i], rhsValues, index)});
+			}
+		}
+	}
+
+	/**
+	 * Fills the values of one operator-prefix subtree, forking a task per operator while the subtree is big.
+	 */
+	@SuppressWarnings("serial")
+	private class ValuesTask extends RecursiveAction {
+		final Search search;
+		final int e;
+		final double[] values;
+		final int position;
+		final double sum;
+		final char sign;
+		final double term;
+		final int ordinal;
+
+		ValuesTask(Search search, int e, double[] values, int position, double sum, char sign, double term, int ordinal){
+			this.search = search;
+			this.e = e;
+			this.values = values;
+			this.position = position;
+			this.sum = sum;
+			this.sign = sign;
+			this.term = term;
+			this.ordinal = ordinal;
+		}
+
+		@Override
+		protected void compute(){
+			if(search.cancelled(e)){
+				return;
+			}
+			int[] ints = search.ints;
+			int to = position <= e + 1 ? e + 1 : ints.length;
+			char[] operators = solver.operators;
+			if(solver.combinations(to - position + 1) <= SEQUENTIAL_LEAVES){
+				solver.getCombinations(values, ints, position, to, sum, sign, term, ordinal);
+				return;
+			}
+			List<ValuesTask> tasks = new ArrayList<>(operators.length);
+			for (int k = 0; k < operators.length; k++) {
+				char c = operators[k];
+				if(c == '*'){
+					tasks.add(new ValuesTask(search, e, values, position + 1, sum, sign, term * ints[position], ordinal * operators.length + k));
+				}
+				else{
+					tasks.add(new ValuesTask(search, e, values, position + 1, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k));
+				}
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Looks for the first left-hand value with a right-hand match, halving the range while it is big.
+	 */
+	@SuppressWarnings("serial")
+	private class ProbeTask extends RecursiveAction {
+		final Search search;
+		final int e;
+		final double[] lhsValues;
+		final double[] rhsValues;
+		final ValueIndex index;
+		final AtomicInteger firstLhs;
+		final int from;
+		final int to;
+
+		ProbeTask(Search search, int e, double[] lhsValues, double[] rhsValues, ValueIndex index, AtomicInteger firstLhs, int from, int to){
+			this.search = search;
+			this.e = e;
+			this.lhsValues = lhsValues;
+			this.rhsValues = rhsValues;
+			this.index = index;
+			this.firstLhs = firstLhs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > SEQUENTIAL_PROBES){
+				int middle = (from + to) >>> 1;
+				invokeAll(new ProbeTask(search, e, lhsValues, rhsValues, index, firstLhs, from, middle),
+						new ProbeTask(search, e, lhsValues, rhsValues, index, firstLhs, middle, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				if(firstLhs.get() < i || search.cancelled(e)){
+					return;
+				}
+				if(firstMatch(lhsValues[i], rhsValues, index) >= 0){
+					firstLhs.accumulateAndGet(i, Math::min);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the first right-hand position holding a value.
+	 * @param value the value to look for.
+	 * @param rhsValues the right-hand values.
+	 * @param index the index of the right-hand values, or null to scan them.
+	 * @return the position, or -1 if there is none.
+	 */
+	private static int firstMatch(double value, double[] rhsValues, ValueIndex index){
+		if(index != null){
+			return index.get(value);
+		}
+		for (int j = 0; j < rhsValues.length; j++) {
+			if(Double.compare(value, rhsValues[j]) == 0){
+				return j;
+			}
+		}
+		return -1;
+	}
+}
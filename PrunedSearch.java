@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * A branch-and-bound search for one puzzle.
+ * Every partial combination gets an interval its final value must fall in, worked out from
+ * the products and tails of the numbers still to come, and a subtree whose interval can't meet
+ * the other side's is never enumerated. Whole splits are skipped when the two sides' intervals
+ * don't overlap, and the left-hand side is probed as it is generated, so the search of a split
+ * stops at its first match. That match is the one the plain solver reports.
+ */
+class PrunedSearch {
+
+	//Bounds are widened by this much, relative to the largest magnitude any intermediate value of the split
+	//can reach, so rounding can't prune a reachable value even where large terms cancel past 2^53.
+	private static final double SLACK = 1e-9;
+	private static final int INITIAL_CAPACITY = 64;
+
+	final OperationInsertion solver;
+	final int[] ints;
+	long visited;
+	long pruned;
+
+	//The distinct right-hand values kept for the current split: the index maps them to their first ordinal.
+	private ValueIndex rhsIndex;
+	private long[] rhsOrdinals = new long[INITIAL_CAPACITY];
+	private int rhsCount;
+	private double rhsMin, rhsMax;
+	private final double[] scratch = new double[2];
+	//The absolute slack of the current split.
+	private double slack;
+
+	PrunedSearch(OperationInsertion solver, int[] ints){
+		this.solver = solver;
+		this.ints = ints;
+	}
+
+	/**
+	 * Finds the first match of the split after e.
+	 * @param e the position of the last left-hand number.
+	 * @return the left-hand and right-hand ordinals, or null if there is no match.
+	 */
+	long[] join(int e){
+		int n = ints.length;
+		double[] lhsTails = tailBounds(0, e+1);
+		double[] rhsTails = tailBounds(e+1, n);
+		//tails[from] bounds the magnitude of every partial sum and product of a side
+		slack = SLACK * Math.max(lhsTails[0], rhsTails[e+1]);
+		double[] lhsBounds = new double[2];
+		double[] rhsBounds = new double[2];
+		bounds(1, e+1, 0, '\0', ints[0], lhsTails, lhsBounds);
+		bounds(e+2, n, 0, '\0', ints[e+1], rhsTails, rhsBounds);
+		if(lhsBounds[1] < rhsBounds[0] || rhsBounds[1] < lhsBounds[0]){
+			pruned++;
+			return null;
+		}
+
+		rhsCount = 0;
+		rhsIndex = new ValueIndex(INITIAL_CAPACITY);
+		rhsMin = Double.POSITIVE_INFINITY;
+		rhsMax = Double.NEGATIVE_INFINITY;
+		collect(e+2, n, 0, '\0', ints[e+1], 0, rhsTails, lhsBounds);
+		if(rhsCount == 0){
+			return null;
+		}
+		return probe(e+1, 1, 0, '\0', ints[0], 0, lhsTails);
+	}
+
+	//Enumerates the right-hand side, keeping only values inside the left-hand bounds.
+	private void collect(int position, int to, double sum, char sign, double term, long ordinal, double[] tails, double[] lhsBounds){
+		OperationInsertion.checkInterrupted(++visited);
+		if(position == to){
+			double value = solver.commit(sum, sign, term);
+			if(value < lhsBounds[0] || value > lhsBounds[1]){
+				return;
+			}
+			if(rhsIndex.get(value) < 0){
+				if(rhsCount == rhsOrdinals.length){
+					rhsOrdinals = Arrays.copyOf(rhsOrdinals, rhsCount * 2);
+				}
+				rhsIndex.putIfAbsent(value, rhsCount);
+				rhsOrdinals[rhsCount++] = ordinal;
+				rhsMin = Math.min(rhsMin, value);
+				rhsMax = Math.max(rhsMax, value);
+			}
+			return;
+		}
+		if(!overlaps(position, to, sum, sign, term, tails, lhsBounds[0], lhsBounds[1])){
+			pruned++;
+			return;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				collect(position + 1, to, sum, sign, term * ints[position], ordinal * operators.length + k, tails, lhsBounds);
+			}
+			else{
+				collect(position + 1, to, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k, tails, lhsBounds);
+			}
+		}
+	}
+
+	//Enumerates the left-hand side in order, stopping at the first value the right-hand side has.
+	private long[] probe(int to, int position, double sum, char sign, double term, long ordinal, double[] tails){
+		OperationInsertion.checkInterrupted(++visited);
+		if(position == to){
+			int j = rhsIndex.get(solver.commit(sum, sign, term));
+			return j < 0 ? null : new long[]{ordinal, rhsOrdinals[j]};
+		}
+		if(!overlaps(position, to, sum, sign, term, tails, rhsMin, rhsMax)){
+			pruned++;
+			return null;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			long[] match;
+			if(c == '*'){
+				match = probe(to, position + 1, sum, sign, term * ints[position], ordinal * operators.length + k, tails);
+			}
+			else{
+				match = probe(to, position + 1, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k, tails);
+			}
+			if(match != null){
+				return match;
+			}
+		}
+		return null;
+	}
+
+	private boolean overlaps(int position, int to, double sum, char sign, double term, double[] tails, double min, double max){
+		bounds(position, to, sum, sign, term, tails, scratch);
+		return scratch[1] >= min && scratch[0] <= max;
+	}
+
+	/**
+	 * Works out the interval every completion of a partial combination falls in.
+	 * The current term is multiplied by the next m numbers for some m, and whatever is left
+	 * becomes a tail of "+-term +-term ..." whose size is at most tails[position + m].
+	 */
+	private void bounds(int position, int to, double sum, char sign, double term, double[] tails, double[] out){
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		double product = term;
+		for (int next = position; ; next++) {
+			double value = solver.commit(sum, sign, product);
+			min = Math.min(min, value - tails[next]);
+			max = Math.max(max, value + tails[next]);
+			if(next == to){
+				break;
+			}
+			product *= ints[next];
+		}
+		out[0] = min - slack;
+		out[1] = max + slack;
+	}
+
+	//tails[k] is the largest |value| of "+-term +-term ..." over ints[k..to), indexed from 0.
+	private double[] tailBounds(int from, int to){
+		double[] tails = new double[to + 1];
+		for (int k = to - 1; k >= from; k--) {
+			double product = 1, bound = 0;
+			for (int j = k; j < to; j++) {
+				product *= ints[j];
+				bound = Math.max(bound, Math.abs(product) + tails[j + 1]);
+			}
+			tails[k] = bound;
+		}
+		return tails;
+	}
+}
@@ -0,0 +1,198 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads puzzles one line at a time straight from bytes, without Strings, Scanners or regular expressions.
+ * Files are memory-mapped a window at a time, other input is read through a channel into one buffer.
+ * Numbers are separated like in Utils.stringToInts: a number is a run of digits, '-' and '^',
+ * and anything else separates numbers. A run that isn't an int, like "1-2" or "^", makes the line invalid.
+ * Unlike stringToInts, separators at the start of a line are skipped rather than making it invalid.
+ */
+class PuzzleReader implements Closeable {
+
+	static final int WINDOW = 1 << 28;
+	static final int BUFFER = 1 << 16;
+
+	private final FileChannel file;
+	private final ReadableByteChannel stream;
+	private long windowStart;
+	private ByteBuffer buffer;
+	private boolean endOfInput;
+
+	private int[] numbers = new int[64];
+	private int count;
+	private int[][] byLength = new int[64][];
+
+	private PuzzleReader(FileChannel file, ReadableByteChannel stream){
+		this.file = file;
+		this.stream = stream;
+	}
+
+	/**
+	 * @param path the file to read, memory-mapped.
+	 * @return a reader over the file.
+	 * @throws IOException if the file can't be opened.
+	 */
+	static PuzzleReader open(Path path) throws IOException {
+		PuzzleReader reader = new PuzzleReader(FileChannel.open(path, StandardOpenOption.READ), null);
+		reader.map(0);
+		return reader;
+	}
+
+	/**
+	 * @param input the stream to read.
+	 * @return a reader over the stream.
+	 */
+	static PuzzleReader open(InputStream input){
+		PuzzleReader reader = new PuzzleReader(null, Channels.newChannel(input));
+		reader.buffer = ByteBuffer.allocateDirect(BUFFER);
+		reader.buffer.flip();
+		return reader;
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start;
+		long size = Math.min(WINDOW, file.size() - start);
+		buffer = file.map(FileChannel.MapMode.READ_ONLY, start, size);
+		endOfInput = start + size == file.size();
+	}
+
+	/**
+	 * Makes sure the buffer holds a whole line from its position, or the rest of the input.
+	 * @return false if the input is used up.
+	 */
+	private boolean fillLine() throws IOException {
+		while(true){
+			for (int i = buffer.position(); i < buffer.limit(); i++) {
+				if(buffer.get(i) == '\n'){
+					return true;
+				}
+			}
+			if(endOfInput){
+				return buffer.hasRemaining();
+			}
+			if(file != null){
+				if(buffer.position() == 0){
+					throw new IOException("Line longer than " + WINDOW + " bytes");
+				}
+				map(windowStart + buffer.position());
+				continue;
+			}
+			buffer.compact();
+			if(!buffer.hasRemaining()){
+				ByteBuffer bigger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+			if(stream.read(buffer) < 0){
+				endOfInput = true;
+			}
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Reads the next line that isn't blank.
+	 * @return true if a line was read, false at the end of the input.
+	 * @throws NumberFormatException if the line holds something that isn't an int; the line is still consumed.
+	 * @throws IOException if reading fails.
+	 */
+	boolean next() throws IOException {
+		while(fillLine()){
+			count = 0;
+			boolean blank = true, invalid = false;
+			long value = 0;
+			int digits = 0, length = 0;
+			boolean negative = false;
+			while(true){
+				int b = buffer.hasRemaining() ? buffer.get() & 0xff : '\n';
+				if(b > ' '){
+					blank = false;
+				}
+				if((b >= '0' && b <= '9') || b == '-' || b == '^'){
+					if(b == '-' && length == 0){
+						negative = true;
+					}
+					else if(b == '-' || b == '^'){
+						invalid = true;
+					}
+					else{
+						value = value * 10 + (b - '0');
+						digits++;
+						if(value > (long) Integer.MAX_VALUE + 1){
+							invalid = true;
+							value = 0;
+						}
+					}
+					length++;
+					continue;
+				}
+				if(length > 0){
+					if(digits == 0 || (!negative && value > Integer.MAX_VALUE)){
+						invalid = true;
+					}
+					if(!invalid){
+						add((int)(negative ? -value : value));
+					}
+					value = 0;
+					digits = 0;
+					length = 0;
+					negative = false;
+				}
+				if(b == '\n'){
+					break;
+				}
+			}
+			if(invalid){
+				throw new NumberFormatException("Not a list of numbers");
+			}
+			if(!blank){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void add(int value){
+		if(count == numbers.length){
+			numbers = Arrays.copyOf(numbers, count * 2);
+		}
+		numbers[count++] = value;
+	}
+
+	/**
+	 * Gets the numbers of the line last read. The array is reused by later lines of the same length,
+	 * so it must not be kept past the next call to next().
+	 * @return the numbers.
+	 */
+	int[] ints(){
+		if(count >= byLength.length){
+			byLength = Arrays.copyOf(byLength, count * 2);
+		}
+		int[] ints = byLength[count];
+		if(ints == null){
+			ints = byLength[count] = new int[count];
+		}
+		System.arraycopy(numbers, 0, ints, 0, count);
+		return ints;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(file != null){
+			file.close();
+		}
+		else{
+			stream.close();
+		}
+	}
+}
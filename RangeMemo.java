@@ -0,0 +1,194 @@
+/**
+ * Memoized value sets for the digit ranges the solver looks at, shared by every split point.
+ * Each set keeps the distinct values of a range with the smallest operator code reaching them,
+ * the code being the base-3 ordinal the solver's enumeration would give that combination.
+ *
+ * Left-hand sides [0,b) are built from the shorter prefixes as V(0,b) = {P(0,b)} + (V(0,k) +- P(k,b)),
+ * which adds terms in the same order as the Shunting-Yard evaluator, so their values are exact copies.
+ * Right-hand sides [a,n) are built from the tails T(k,n), the values of "+-term +-term ...",
+ * which every split reuses. Tails add their terms from the right, which only matches the evaluator
+ * while everything is an integer below 2^53, so a range that can go past that is marked inexact.
+ */
+class RangeMemo {
+
+	static final double EXACT_LIMIT = 9007199254740992.0;//2^53
+	static final int MAX_SLOTS = 39;//3^39 still fits in a long
+
+	final int[] ints;
+	private final int plus, minus, times;
+	private final RangeValues[] prefixes;
+	private final RangeValues[] tails;
+	private final long[] powers;
+	private final double[] tailBounds;
+	//How many operator assignments the sets built so far stand for, and how many distinct values they keep.
+	long represented;
+	long kept;
+
+	/**
+	 * Checks whether a puzzle can be memoized: its operators must be exactly + - and *, in any order,
+	 * and it must have few enough numbers for the codes to fit in a long.
+	 * @param ints the numbers of the puzzle.
+	 * @param operators the operators of the solver.
+	 * @return true if the constructor would accept them.
+	 */
+	static boolean supports(int[] ints, char[] operators){
+		return ints.length - 1 <= MAX_SLOTS && operators.length == 3
+				&& indexOf(operators, '+') >= 0 && indexOf(operators, '-') >= 0 && indexOf(operators, '*') >= 0;
+	}
+
+	RangeMemo(int[] ints, char[] operators){
+		if(ints.length - 1 > MAX_SLOTS){
+			throw new IllegalArgumentException("Too many numbers to memoize: " + ints.length);
+		}
+		this.ints = ints;
+		plus = indexOf(operators, '+');
+		minus = indexOf(operators, '-');
+		times = indexOf(operators, '*');
+		if(operators.length != 3 || plus < 0 || minus < 0 || times < 0){
+			throw new IllegalArgumentException("Memoization needs exactly the operators + - *");
+		}
+		int n = ints.length;
+		prefixes = new RangeValues[n + 1];
+		tails = new RangeValues[n + 1];
+		powers = new long[n + 1];
+		powers[0] = 1;
+		for (int i = 1; i <= n && i <= MAX_SLOTS; i++) {
+			powers[i] = powers[i - 1] * 3;
+		}
+		//tailBounds[k] is the largest sum of |term| over all ways of writing ints[k..n)
+		tailBounds = new double[n + 1];
+		for (int k = n - 1; k >= 0; k--) {
+			double bound = 0;
+			for (int j = k + 1; j <= n; j++) {
+				bound = Math.max(bound, Math.abs(product(k, j)) + tailBounds[j]);
+			}
+			tailBounds[k] = bound;
+		}
+	}
+
+	/**
+	 * Checks whether every value over every range of the puzzle is an exact integer in a double.
+	 * @return true if no way of writing any range can get past 2^53.
+	 */
+	boolean exact(){
+		return tailBounds[0] <= EXACT_LIMIT;
+	}
+
+	/**
+	 * Gets the values of ints[0..b), building and keeping the shorter prefixes as needed.
+	 * @param b the end of the range.
+	 * @return the values, with codes over the b-1 slots of the range.
+	 */
+	RangeValues prefix(int b){
+		if(prefixes[b] != null){
+			return prefixes[b];
+		}
+		RangeValues values = new RangeValues(16);
+		values.offer(product(0, b), stars(b - 1));
+		for (int k = 1; k < b; k++) {
+			RangeValues head = prefix(k);
+			double term = product(k, b);
+			long width = powers[b - k];
+			long plusCode = plus * powers[b - k - 1] + stars(b - k - 1);
+			long minusCode = minus * powers[b - k - 1] + stars(b - k - 1);
+			for (int slot = 0; slot < head.capacity(); slot++) {
+				OperationInsertion.checkInterrupted(slot);
+				if(head.used(slot)){
+					double h = head.valueAt(slot);
+					long code = head.codeAt(slot) * width;
+					values.offer(h + term, code + plusCode);
+					values.offer(h - term, code + minusCode);
+				}
+			}
+		}
+		prefixes[b] = values;
+		count(powers[b - 1], values);
+		return values;
+	}
+
+	/**
+	 * Gets the values of ints[a..n). Only the tails it is built from are kept.
+	 * @param a the start of the range.
+	 * @return the values, with codes over the n-a-1 slots of the range.
+	 */
+	RangeValues suffix(int a){
+		int n = ints.length;
+		RangeValues values = new RangeValues(16);
+		values.exact = tailBounds[a] <= EXACT_LIMIT;
+		values.offer(product(a, n), stars(n - a - 1));
+		for (int j = a + 1; j < n; j++) {
+			RangeValues tail = tail(j);
+			double term = product(a, j);
+			long code = powers[n - j] * stars(j - a - 1);
+			for (int slot = 0; slot < tail.capacity(); slot++) {
+				OperationInsertion.checkInterrupted(slot);
+				if(tail.used(slot)){
+					values.offer(term + tail.valueAt(slot), code + tail.codeAt(slot));
+				}
+			}
+		}
+		count(powers[n - a - 1], values);
+		return values;
+	}
+
+	//The values of "+-term +-term ..." over ints[k..n), with codes over slots k..n-1.
+	private RangeValues tail(int k){
+		if(tails[k] != null){
+			return tails[k];
+		}
+		int n = ints.length;
+		RangeValues values = new RangeValues(16);
+		for (int j = k + 1; j <= n; j++) {
+			double term = product(k, j);
+			long starCode = powers[n - j] * stars(j - k - 1);
+			long plusCode = plus * powers[n - k - 1] + starCode;
+			long minusCode = minus * powers[n - k - 1] + starCode;
+			if(j == n){
+				values.offer(term, plusCode);
+				values.offer(-term, minusCode);
+				continue;
+			}
+			RangeValues rest = tail(j);
+			for (int slot = 0; slot < rest.capacity(); slot++) {
+				OperationInsertion.checkInterrupted(slot);
+				if(rest.used(slot)){
+					double t = rest.valueAt(slot);
+					long code = rest.codeAt(slot);
+					values.offer(term + t, plusCode + code);
+					values.offer(-term + t, minusCode + code);
+				}
+			}
+		}
+		tails[k] = values;
+		count(2 * powers[n - k - 1], values);
+		return values;
+	}
+
+	private void count(long assignments, RangeValues values){
+		represented += assignments;
+		kept += values.size();
+	}
+
+	//The product of ints[from..to), multiplied left to right like the evaluator builds a term.
+	private double product(int from, int to){
+		double product = ints[from];
+		for (int i = from + 1; i < to; i++) {
+			product *= ints[i];
+		}
+		return product;
+	}
+
+	//The code of count '*' slots in a row.
+	private long stars(int count){
+		return times * (powers[count] - 1) / 2;
+	}
+
+	private static int indexOf(char[] operators, char c){
+		for (int i = 0; i < operators.length; i++) {
+			if(operators[i] == c){
+				return i;
+			}
+		}
+		return -1;
+	}
+}
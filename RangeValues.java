@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * The distinct values reachable over one digit range, each kept with the smallest
+ * operator code that reaches it. Values are keyed by their raw long bits like in ValueIndex.
+ */
+class RangeValues {
+
+	private static final long EMPTY = 0x7ff80000_00000001L;//a NaN payload doubleToLongBits never produces
+
+	private long[] keys;
+	private long[] codes;
+	private int mask;
+	private int size;
+	/**
+	 * Whether the values are exactly what the Shunting-Yard evaluator would give for their codes.
+	 */
+	boolean exact = true;
+
+	RangeValues(int expected){
+		int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+		keys = new long[capacity];
+		codes = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Adds a value, keeping the smaller code if it is already present.
+	 * @param value the value reached.
+	 * @param code the operator code reaching it.
+	 */
+	void offer(double value, long code){
+		long bits = Double.doubleToLongBits(value);
+		int slot = slot(bits);
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == bits){
+				if(code < codes[slot]){
+					codes[slot] = code;
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = bits;
+		codes[slot] = code;
+		if(++size * 2 > keys.length){
+			grow();
+		}
+	}
+
+	/**
+	 * Looks up the smallest code reaching a value.
+	 * @param value the value to look for.
+	 * @return the code, or -1 if the value is not reachable.
+	 */
+	long code(double value){
+		long bits = Double.doubleToLongBits(value);
+		int slot = slot(bits);
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == bits){
+				return codes[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	int size(){
+		return size;
+	}
+
+	/*
+	Slot-level access for iterating over the values without allocating.
+	 */
+
+	int capacity(){
+		return keys.length;
+	}
+
+	boolean used(int slot){
+		return keys[slot] != EMPTY;
+	}
+
+	double valueAt(int slot){
+		return Double.longBitsToDouble(keys[slot]);
+	}
+
+	long codeAt(int slot){
+		return codes[slot];
+	}
+
+	private int slot(long bits){
+		long h = bits * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private void grow(){
+		long[] oldKeys = keys;
+		long[] oldCodes = codes;
+		keys = new long[oldKeys.length * 2];
+		codes = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY){
+				int slot = slot(oldKeys[i]);
+				while(keys[slot] != EMPTY){
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				codes[slot] = oldCodes[i];
+			}
+		}
+	}
+}
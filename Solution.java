@@ -0,0 +1,70 @@
+import java.util.Comparator;
+
+/**
+ * One equation of a puzzle, kept as its split and operator ordinals.
+ * The text is only built when asked for, so counting or ranking solutions allocates no strings.
+ */
+class Solution {
+
+	/**
+	 * Orders solutions by how many terms they add up, fewest first, then in the order they were found.
+	 */
+	static final Comparator<Solution> SIMPLEST = Comparator.comparingInt(Solution::terms).thenComparingLong(Solution::index);
+
+	final OperationInsertion solver;
+	final int[] ints;
+	final int split;
+	final long lhsOrdinal;
+	final long rhsOrdinal;
+	final long index;
+
+	/**
+	 * @param solver the solver whose operators the ordinals index into.
+	 * @param ints the numbers of the puzzle.
+	 * @param split the position of the last left-hand number.
+	 * @param lhsOrdinal the operators of the left-hand side.
+	 * @param rhsOrdinal the operators of the right-hand side.
+	 * @param index how many solutions were found before this one.
+	 */
+	Solution(OperationInsertion solver, int[] ints, int split, long lhsOrdinal, long rhsOrdinal, long index){
+		this.solver = solver;
+		this.ints = ints;
+		this.split = split;
+		this.lhsOrdinal = lhsOrdinal;
+		this.rhsOrdinal = rhsOrdinal;
+		this.index = index;
+	}
+
+	long index(){
+		return index;
+	}
+
+	/**
+	 * Counts the terms on both sides, that is the numbers not joined to the one before by '*'.
+	 * @return the number of terms.
+	 */
+	int terms(){
+		return countTerms(lhsOrdinal, split) + countTerms(rhsOrdinal, ints.length - split - 2);
+	}
+
+	private int countTerms(long ordinal, int slots){
+		char[] operators = solver.operators;
+		int terms = 1;
+		for (int i = 0; i < slots; i++) {
+			if(operators[(int)(ordinal % operators.length)] != '*'){
+				terms++;
+			}
+			ordinal /= operators.length;
+		}
+		return terms;
+	}
+
+	String equation(){
+		return solver.equation(ints, split, lhsOrdinal, rhsOrdinal);
+	}
+
+	@Override
+	public String toString(){
+		return equation();
+	}
+}
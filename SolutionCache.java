@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache shared by every puzzle a solver sees, evicting the least recently used entries.
+ * It keeps whole results, keyed by the numbers of the puzzle and the solver's operators and arithmetic,
+ * and the values of digit ranges, keyed by the numbers of the range, so puzzles that share a prefix
+ * or a suffix reuse each other's enumerations. Results can be saved to and loaded from a mapped file.
+ */
+class SolutionCache {
+
+	static final int DEFAULT_RESULTS = 10000;
+	static final long DEFAULT_RANGE_VALUES = 1L << 22;
+	private static final int MAGIC = 0x4f494331;//"OIC1"
+	private static final String UNSOLVABLE = "";//stands for a null result, which no equation can be
+
+	final int maxResults;
+	final long maxRangeValues;
+	long hits;
+	long misses;
+	long rangeHits;
+	long rangeMisses;
+
+	private final LinkedHashMap<Key, String> results;
+	private final LinkedHashMap<Key, double[]> ranges = new LinkedHashMap<>(16, 0.75f, true);
+	private long rangeValues;
+
+	/**
+	 * @param maxResults how many puzzle results to keep.
+	 * @param maxRangeValues how many range values to keep, over all ranges together.
+	 */
+	SolutionCache(int maxResults, long maxRangeValues){
+		this.maxResults = maxResults;
+		this.maxRangeValues = maxRangeValues;
+		this.results = new LinkedHashMap<Key, String>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, String> eldest){
+				return size() > SolutionCache.this.maxResults;
+			}
+		};
+	}
+
+	/**
+	 * The numbers of a puzzle or a range together with whatever else decides its result.
+	 */
+	static final class Key {
+		final int[] ints;
+		final String context;
+		private final int hash;
+
+		Key(int[] ints, int from, int to, String context){
+			this.ints = Arrays.copyOfRange(ints, from, to);
+			this.context = context;
+			this.hash = 31 * Arrays.hashCode(this.ints) + context.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key)){
+				return false;
+			}
+			Key other = (Key) o;
+			return hash == other.hash && Arrays.equals(ints, other.ints) && context.equals(other.context);
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+	}
+
+	/**
+	 * Makes the key of a puzzle for a solver.
+	 * @param solver the solver, whose operators, arithmetic, concatenation, parentheses and whether it
+	 * reports the first equation or any are part of the key.
+	 * @param ints the numbers of the puzzle.
+	 * @return the key.
+	 */
+	static Key key(OperationInsertion solver, int[] ints){
+		return new Key(ints, 0, ints.length, context(solver));
+	}
+
+	//Everything that changes which equation the solver reports; the join, memo, pruning and external
+	//settings only change how the first one is found.
+	private static String context(OperationInsertion solver){
+		boolean any = solver.parallelSolver != null && !solver.parallelSolver.deterministic;
+		return new String(solver.operators) + ' ' + solver.config.arithmetic
+				+ (solver.concatenate ? " concat" : "") + (solver.parenthesize ? " parens" : "") + (any ? " any" : "");
+	}
+
+	/**
+	 * Looks up the result of a puzzle.
+	 * @param key the key of the puzzle.
+	 * @return the cached result, "" if the puzzle has no equation, or null if it is not cached.
+	 */
+	synchronized String get(Key key){
+		String result = results.get(key);
+		if(result == null){
+			misses++;
+		}
+		else{
+			hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Records the result of a puzzle.
+	 * @param key the key of the puzzle.
+	 * @param equation the equation, or null if there is none.
+	 */
+	synchronized void put(Key key, String equation){
+		results.put(key, equation == null ? UNSOLVABLE : equation);
+	}
+
+	/**
+	 * Turns a cached result back into what solve returns.
+	 * @param cached a result from get.
+	 * @return the equation, or null if the puzzle has none.
+	 */
+	static String equation(String cached){
+		return cached.equals(UNSOLVABLE) ? null : cached;
+	}
+
+	/**
+	 * Checks whether the values of a range of numbers are few enough for the cache to keep.
+	 * @param solver the solver whose operators decide how many values there are.
+	 * @param length how many numbers the range has.
+	 * @return true if values() would keep them.
+	 */
+	boolean keeps(OperationInsertion solver, int length){
+		long count = 1;
+		for (int i = 1; i < length; i++) {
+			count *= solver.operators.length;
+			if(count > maxRangeValues){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the values of ints[from..to), enumerating and keeping them if they are not cached.
+	 * @param solver the solver to enumerate with.
+	 * @param ints the numbers of the puzzle.
+	 * @param from the start of the range.
+	 * @param to the end of the range.
+	 * @return the values, in the order of getValues. Callers must not change them.
+	 */
+	double[] values(OperationInsertion solver, int[] ints, int from, int to){
+		Key key = new Key(ints, from, to, new String(solver.operators));
+		synchronized(this){
+			double[] values = ranges.get(key);
+			if(values != null){
+				rangeHits++;
+				return values;
+			}
+			rangeMisses++;
+		}
+		double[] values = solver.getValues(ints, from, to);
+		synchronized(this){
+			if(values.length <= maxRangeValues && ranges.put(key, values) == null){
+				rangeValues += values.length;
+				Iterator<double[]> eldest = ranges.values().iterator();
+				while(rangeValues > maxRangeValues){
+					rangeValues -= eldest.next().length;
+					eldest.remove();
+				}
+			}
+		}
+		return values;
+	}
+
+	synchronized int size(){
+		return results.size();
+	}
+
+	/**
+	 * Loads the results saved in a file, if it exists. Nothing is loaded from a file that turns out to be corrupt.
+	 * @param file the file.
+	 * @throws IOException if the file can't be read, isn't a cache file, or is truncated or corrupt.
+	 */
+	synchronized void load(Path file) throws IOException {
+		if(!Files.exists(file)){
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.remaining() < 8 || buffer.getInt() != MAGIC){
+				throw new IOException("Not a cache file: " + file);
+			}
+			Map<Key, String> loaded = new LinkedHashMap<>();
+			try {
+				int count = buffer.getInt();
+				for (int i = 0; i < count; i++) {
+					String context = new String(bytes(buffer), StandardCharsets.UTF_8);
+					int[] ints = new int[length(buffer, 4)];
+					for (int j = 0; j < ints.length; j++) {
+						ints[j] = buffer.getInt();
+					}
+					String equation = new String(bytes(buffer), StandardCharsets.UTF_8);
+					loaded.put(new Key(ints, 0, ints.length, context), equation);
+				}
+			} catch (BufferUnderflowException ex) {
+				throw new IOException("Truncated cache file: " + file, ex);
+			}
+			results.putAll(loaded);
+		}
+	}
+
+	//Reads a length and checks that that many elements of the given size are left.
+	private static int length(MappedByteBuffer buffer, int size) throws IOException {
+		int length = buffer.getInt();
+		if(length < 0 || (long) length * size > buffer.remaining()){
+			throw new IOException("Corrupt cache file: a length of " + length + " runs past its end");
+		}
+		return length;
+	}
+
+	private static byte[] bytes(MappedByteBuffer buffer) throws IOException {
+		byte[] bytes = new byte[length(buffer, 1)];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Saves the cached results to a file, least recently used first, replacing what it held.
+	 * @param file the file.
+	 * @throws IOException if the file can't be written.
+	 */
+	synchronized void save(Path file) throws IOException {
+		long size = 8;
+		for (Map.Entry<Key, String> entry : results.entrySet()) {
+			Key key = entry.getKey();
+			size += 12 + key.context.getBytes(StandardCharsets.UTF_8).length + 4L * key.ints.length
+					+ entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC).putInt(results.size());
+			for (Map.Entry<Key, String> entry : results.entrySet()) {
+				Key key = entry.getKey();
+				byte[] context = key.context.getBytes(StandardCharsets.UTF_8);
+				buffer.putInt(context.length).put(context).putInt(key.ints.length);
+				for (int value : key.ints) {
+					buffer.putInt(value);
+				}
+				byte[] equation = entry.getValue().getBytes(StandardCharsets.UTF_8);
+				buffer.putInt(equation.length).put(equation);
+			}
+			buffer.force();
+		}
+	}
+}
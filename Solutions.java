@@ -0,0 +1,268 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Every equation of a puzzle rather than just the first, produced on demand.
+ * Solutions come out in the solver's order: by split, then left-hand ordinal, then right-hand ordinal,
+ * so the first one is the equation solve() reports.
+ * Only the right-hand values of the current split are kept, grouped by value;
+ * the left-hand side is walked one combination at a time.
+ */
+class Solutions {
+
+	final OperationInsertion solver;
+
+	/**
+	 * @param solver the solver whose operators to enumerate.
+	 * @throws IllegalArgumentException if the solver needs the extended search or exact arithmetic, which this enumeration doesn't do.
+	 */
+	Solutions(OperationInsertion solver){
+		if(solver.extended() || solver.config.arithmetic == Utils.ShuntingArithmetic.EXACT){
+			throw new IllegalArgumentException("Solutions only enumerate + - and * in double arithmetic, without concatenation or parentheses");
+		}
+		this.solver = solver;
+	}
+
+	/**
+	 * @param ints the numbers of the puzzle.
+	 * @return an iterator over every equation of the puzzle.
+	 */
+	Iterator<Solution> iterator(int[] ints){
+		return new SolutionIterator(ints);
+	}
+
+	/**
+	 * @param ints the numbers of the puzzle.
+	 * @return a lazy, ordered stream of every equation of the puzzle.
+	 */
+	Stream<Solution> stream(int[] ints){
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(ints),
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	/**
+	 * Counts the equations of a puzzle without building any of them.
+	 * @param ints the numbers of the puzzle.
+	 * @return the number of equations.
+	 */
+	long count(int[] ints){
+		long count = 0;
+		for (int e = 0; e < ints.length - 1; e++) {
+			RightHandGroups rhs = new RightHandGroups(ints, e);
+			if(rhs.groups.size() == 0){
+				continue;
+			}
+			LeftHandWalk lhs = new LeftHandWalk(ints, e);
+			do {
+				int group = rhs.groups.get(lhs.value());
+				if(group >= 0){
+					count += rhs.sizes[group];
+				}
+			} while(lhs.advance());
+		}
+		return count;
+	}
+
+	/**
+	 * Keeps the k best equations of a puzzle in a bounded heap, so memory stays at k solutions.
+	 * @param ints the numbers of the puzzle.
+	 * @param k how many equations to keep.
+	 * @param order the order to rank them by, best first.
+	 * @return at most k equations, best first.
+	 */
+	List<Solution> top(int[] ints, int k, Comparator<Solution> order){
+		if(k <= 0){
+			return new ArrayList<>();
+		}
+		PriorityQueue<Solution> heap = new PriorityQueue<>(k + 1, order.reversed());
+		Iterator<Solution> solutions = iterator(ints);
+		while(solutions.hasNext()){
+			Solution solution = solutions.next();
+			if(heap.size() < k){
+				heap.add(solution);
+			}
+			else if(order.compare(solution, heap.peek()) < 0){
+				heap.poll();
+				heap.add(solution);
+			}
+		}
+		List<Solution> best = new ArrayList<>(heap);
+		best.sort(order);
+		return best;
+	}
+
+	/**
+	 * The right-hand values of one split, grouped by value, with each group's ordinals in increasing order.
+	 */
+	private class RightHandGroups {
+		final ValueIndex groups;
+		final int[] firsts;
+		final int[] sizes;
+		final int[] next;
+
+		RightHandGroups(int[] ints, int e){
+			double[] values = solver.getValues(ints, e+1, ints.length);
+			groups = new ValueIndex(values.length);
+			int[] firsts = new int[values.length];
+			int[] lasts = new int[values.length];
+			int[] sizes = new int[values.length];
+			next = new int[values.length];
+			int count = 0;
+			for (int j = 0; j < values.length; j++) {
+				next[j] = -1;
+				int group = groups.get(values[j]);
+				if(group < 0){
+					group = count++;
+					groups.putIfAbsent(values[j], group);
+					firsts[group] = j;
+				}
+				else{
+					next[lasts[group]] = j;
+				}
+				lasts[group] = j;
+				sizes[group]++;
+			}
+			this.firsts = Arrays.copyOf(firsts, count);
+			this.sizes = Arrays.copyOf(sizes, count);
+		}
+	}
+
+	/**
+	 * Walks the left-hand combinations of one split in ordinal order, one at a time.
+	 * Each position keeps the running (sum, sign, term) of the evaluation up to it, so moving to
+	 * the next ordinal only redoes the positions whose operator changed.
+	 */
+	private class LeftHandWalk {
+		final int[] ints;
+		final int to;
+		final int[] digits;
+		final double[] sums;
+		final char[] signs;
+		final double[] terms;
+		long ordinal;
+
+		LeftHandWalk(int[] ints, int e){
+			this.ints = ints;
+			this.to = e + 1;
+			digits = new int[to];
+			sums = new double[to];
+			signs = new char[to];
+			terms = new double[to];
+			terms[0] = ints[0];
+			fill(1);
+		}
+
+		//Recomputes the states after positions from-1 .. to-1, with the operators currently in digits.
+		private void fill(int from){
+			char[] operators = solver.operators;
+			for (int position = from; position < to; position++) {
+				char c = operators[digits[position]];
+				double sum = sums[position - 1], term = terms[position - 1];
+				char sign = signs[position - 1];
+				if(c == '*'){
+					sums[position] = sum;
+					signs[position] = sign;
+					terms[position] = term * ints[position];
+				}
+				else{
+					sums[position] = solver.commit(sum, sign, term);
+					signs[position] = c;
+					terms[position] = ints[position];
+				}
+			}
+		}
+
+		double value(){
+			return solver.commit(sums[to - 1], signs[to - 1], terms[to - 1]);
+		}
+
+		/**
+		 * Moves to the next ordinal.
+		 * @return false if there is none.
+		 */
+		boolean advance(){
+			int position = to - 1;
+			while(position > 0 && digits[position] == solver.operators.length - 1){
+				digits[position--] = 0;
+			}
+			if(position == 0){
+				return false;
+			}
+			digits[position]++;
+			ordinal++;
+			fill(position);
+			return true;
+		}
+	}
+
+	private class SolutionIterator implements Iterator<Solution> {
+		final int[] ints;
+		int e = -1;
+		RightHandGroups rhs;
+		LeftHandWalk lhs;
+		boolean lhsDone = true;
+		int rhsOrdinal = -1;
+		long found;
+		Solution next;
+
+		SolutionIterator(int[] ints){
+			this.ints = ints;
+		}
+
+		@Override
+		public boolean hasNext(){
+			if(next == null){
+				next = find();
+			}
+			return next != null;
+		}
+
+		@Override
+		public Solution next(){
+			if(!hasNext()){
+				throw new NoSuchElementException();
+			}
+			Solution solution = next;
+			next = null;
+			return solution;
+		}
+
+		private Solution find(){
+			while(true){
+				if(rhsOrdinal >= 0){
+					Solution solution = new Solution(solver, ints, e, lhs.ordinal, rhsOrdinal, found++);
+					rhsOrdinal = rhs.next[rhsOrdinal];
+					return solution;
+				}
+				if(lhsDone){
+					if(++e >= ints.length - 1){
+						return null;
+					}
+					rhs = new RightHandGroups(ints, e);
+					if(rhs.groups.size() == 0){
+						continue;
+					}
+					lhs = new LeftHandWalk(ints, e);
+					lhsDone = false;
+				}
+				else if(!lhs.advance()){
+					lhsDone = true;
+					continue;
+				}
+				int group = rhs.groups.get(lhs.value());
+				if(group >= 0){
+					rhsOrdinal = rhs.firsts[group];
+				}
+			}
+		}
+	}
+}
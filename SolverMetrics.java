@@ -0,0 +1,238 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the solver and the evaluator, shared by every thread.
+ * Everything is recorded at most once per split or per call, never per combination, and behind
+ * a check of enabled, so with metrics off the solver pays one field read per split.
+ */
+class SolverMetrics implements SolverMetricsMBean {
+
+	static final SolverMetrics INSTANCE = new SolverMetrics();
+	static final String OBJECT_NAME = "operationinsertion:type=SolverMetrics";
+	static final int MAX_SPLITS = 64;
+
+	static volatile boolean enabled;
+
+	final LongAdder puzzles = new LongAdder();
+	final LongAdder solved = new LongAdder();
+	final LongAdder splits = new LongAdder();
+	final LongAdder combinations = new LongAdder();
+	final LongAdder joinComparisons = new LongAdder();
+	final LongAdder evaluations = new LongAdder();
+	final Histogram solveNanos = new Histogram();
+	final Histogram splitNanos = new Histogram();
+	final LongAdder[] splitNanosByPosition = new LongAdder[MAX_SPLITS];
+	private String slowestPuzzle = "";
+	private volatile long slowestNanos;
+
+	private SolverMetrics(){
+		for (int e = 0; e < MAX_SPLITS; e++) {
+			splitNanosByPosition[e] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Counts of durations in power-of-two buckets of nanoseconds.
+	 */
+	static final class Histogram {
+		final LongAdder[] buckets = new LongAdder[64];
+
+		Histogram(){
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos){
+			buckets[64 - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+		}
+
+		/**
+		 * @param p the fraction of durations that should be at most the result.
+		 * @return the upper bound of the bucket the percentile falls in, or 0 if nothing was recorded.
+		 */
+		long percentile(double p){
+			long[] counts = new long[buckets.length];
+			long total = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				counts[i] = buckets[i].sum();
+				total += counts[i];
+			}
+			long rank = (long) Math.ceil(p * total), seen = 0;
+			for (int i = 0; i < counts.length && total > 0; i++) {
+				seen += counts[i];
+				if(seen >= rank){
+					return i == 0 ? 0 : (1L << i) - 1;
+				}
+			}
+			return 0;
+		}
+
+		void reset(){
+			for (LongAdder bucket : buckets) {
+				bucket.reset();
+			}
+		}
+	}
+
+	/**
+	 * Records one finished puzzle.
+	 * @param ints the numbers of the puzzle.
+	 * @param solved whether an equation was found.
+	 * @param nanos how long it took.
+	 */
+	void puzzle(int[] ints, boolean solved, long nanos){
+		puzzles.increment();
+		if(solved){
+			this.solved.increment();
+		}
+		solveNanos.record(nanos);
+		if(nanos > slowestNanos){
+			synchronized(this){
+				if(nanos > slowestNanos){
+					slowestNanos = nanos;
+					slowestPuzzle = Arrays.toString(ints);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records one split of a puzzle.
+	 * @param e the position of the last left-hand number.
+	 * @param nanos how long the split took.
+	 */
+	void split(int e, long nanos){
+		splits.increment();
+		splitNanos.record(nanos);
+		splitNanosByPosition[Math.min(e, MAX_SPLITS - 1)].add(nanos);
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, if they aren't already.
+	 * @throws JMException if registering fails.
+	 */
+	static void register() throws JMException {
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name)){
+			ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+		}
+	}
+
+	/**
+	 * Prints a summary line to stderr every period, on a daemon thread.
+	 * @param periodSeconds the time between two lines.
+	 */
+	static void startDump(long periodSeconds){
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.scheduleAtFixedRate(() -> System.err.println(INSTANCE.summary()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	String summary(){
+		return String.format("metrics: %d puzzles (%d solved), %d splits, %d combinations, %d join comparisons, %d evaluations;"
+						+ " solve p50 %d us p99 %d us; split p99 %d us; slowest %s in %d us",
+				getPuzzles(), getSolved(), getSplits(), getCombinations(), getJoinComparisons(), getEvaluations(),
+				getSolveP50Micros(), getSolveP99Micros(), getSplitP99Micros(), getSlowestPuzzle(), getSlowestPuzzleMicros());
+	}
+
+	@Override
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled){
+		SolverMetrics.enabled = enabled;
+	}
+
+	@Override
+	public long getPuzzles(){
+		return puzzles.sum();
+	}
+
+	@Override
+	public long getSolved(){
+		return solved.sum();
+	}
+
+	@Override
+	public long getSplits(){
+		return splits.sum();
+	}
+
+	@Override
+	public long getCombinations(){
+		return combinations.sum();
+	}
+
+	@Override
+	public long getJoinComparisons(){
+		return joinComparisons.sum();
+	}
+
+	@Override
+	public long getEvaluations(){
+		return evaluations.sum();
+	}
+
+	@Override
+	public long getSolveP50Micros(){
+		return solveNanos.percentile(0.50) / 1000;
+	}
+
+	@Override
+	public long getSolveP99Micros(){
+		return solveNanos.percentile(0.99) / 1000;
+	}
+
+	@Override
+	public long getSplitP99Micros(){
+		return splitNanos.percentile(0.99) / 1000;
+	}
+
+	@Override
+	public long[] getSplitMicrosByPosition(){
+		long[] micros = new long[MAX_SPLITS];
+		for (int e = 0; e < MAX_SPLITS; e++) {
+			micros[e] = splitNanosByPosition[e].sum() / 1000;
+		}
+		return micros;
+	}
+
+	@Override
+	public synchronized String getSlowestPuzzle(){
+		return slowestPuzzle;
+	}
+
+	@Override
+	public synchronized long getSlowestPuzzleMicros(){
+		return slowestNanos / 1000;
+	}
+
+	@Override
+	public void reset(){
+		for (LongAdder counter : new LongAdder[]{puzzles, solved, splits, combinations, joinComparisons, evaluations}) {
+			counter.reset();
+		}
+		for (LongAdder counter : splitNanosByPosition) {
+			counter.reset();
+		}
+		solveNanos.reset();
+		splitNanos.reset();
+		synchronized(this){
+			slowestPuzzle = "";
+			slowestNanos = 0;
+		}
+	}
+}
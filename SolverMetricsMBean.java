@@ -0,0 +1,36 @@
+/**
+ * What SolverMetrics shows over JMX. Latencies are in microseconds, and percentiles are the
+ * upper bounds of power-of-two buckets, so they are accurate to a factor of two.
+ */
+public interface SolverMetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getPuzzles();
+
+	long getSolved();
+
+	long getSplits();
+
+	long getCombinations();
+
+	long getJoinComparisons();
+
+	long getEvaluations();
+
+	long getSolveP50Micros();
+
+	long getSolveP99Micros();
+
+	long getSplitP99Micros();
+
+	long[] getSplitMicrosByPosition();
+
+	String getSlowestPuzzle();
+
+	long getSlowestPuzzleMicros();
+
+	void reset();
+}
@@ -0,0 +1,198 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves puzzles over a local TCP or Unix domain socket, one puzzle per line and one result per line,
+ * the results being the ones the batch mode writes plus "Busy." and "Timeout.".
+ * Every connection gets its own thread, a virtual one where the JVM has them, and all of them
+ * share the one solver, which only reads its settings while solving.
+ * Solves run on a pool of one thread per core: a request over the in-flight limit is turned away,
+ * and one that runs past the timeout is answered and its solve interrupted, which stops it within a few
+ * thousand combinations (see OperationInsertion.CHECK_INTERVAL).
+ */
+class SolverServer {
+
+	static final String BUSY = "Busy.";
+	static final String TIMEOUT = "Timeout.";
+	private static final int QUEUED = 0, RUNNING = 1, ABANDONED = 2;
+
+	final OperationInsertion solver;
+	final long timeoutMillis;
+	final Semaphore inFlight;
+	private final ExecutorService connections = connectionExecutor();
+	private final ExecutorService solves = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+		Thread thread = new Thread(runnable, "solver");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private ServerSocketChannel channel;
+	private Path socketFile;
+
+	/**
+	 * @param solver the solver every request shares.
+	 * @param timeoutMillis how long a request may take before it is answered with "Timeout.".
+	 * @param maxInFlight how many requests may be solving at once before new ones get "Busy.".
+	 */
+	SolverServer(OperationInsertion solver, long timeoutMillis, int maxInFlight){
+		this.solver = solver;
+		this.timeoutMillis = timeoutMillis;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Uses a virtual thread per connection when the JVM has them, and a cached pool of daemon threads otherwise.
+	 * Looked up reflectively so the solver still builds and runs on JDKs without them.
+	 */
+	private static ExecutorService connectionExecutor(){
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException unavailable) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "connection");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Starts listening.
+	 * @param address a TCP port on the loopback interface, or "unix:" followed by a socket path.
+	 * @throws IOException if the socket can't be bound.
+	 */
+	void bind(String address) throws IOException {
+		if(address.startsWith("unix:")){
+			socketFile = Paths.get(address.substring("unix:".length()));
+			Files.deleteIfExists(socketFile);
+			channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			channel.bind(UnixDomainSocketAddress.of(socketFile));
+		}
+		else{
+			channel = ServerSocketChannel.open();
+			channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+		}
+	}
+
+	/**
+	 * Accepts connections until the server is closed.
+	 * @throws IOException if accepting fails for any other reason than the server closing.
+	 */
+	void serve() throws IOException {
+		while(channel.isOpen()){
+			SocketChannel connection;
+			try {
+				connection = channel.accept();
+			} catch (IOException ex) {
+				if(!channel.isOpen()){
+					return;
+				}
+				throw ex;
+			}
+			connections.execute(() -> handle(connection));
+		}
+	}
+
+	//Answers every line of one connection until the client closes it.
+	private void handle(SocketChannel connection){
+		try (SocketChannel open = connection;
+			 BufferedReader reader = new BufferedReader(Channels.newReader(open, StandardCharsets.UTF_8));
+			 Writer writer = Channels.newWriter(open, StandardCharsets.UTF_8)) {
+			String line;
+			while((line = reader.readLine()) != null){
+				if(line.trim().isEmpty()){
+					continue;
+				}
+				writer.write(answer(line.trim()));
+				writer.write('\n');
+				writer.flush();
+			}
+		} catch (IOException ex) {
+			//the client went away; nothing to answer
+		}
+	}
+
+	/**
+	 * Solves one request line.
+	 * @param line the numbers of the puzzle.
+	 * @return the line to answer with.
+	 */
+	String answer(String line){
+		int[] ints;
+		try {
+			ints = Utils.stringToInts(line);
+		} catch (NumberFormatException ex) {
+			return "Invalid puzzle.";
+		}
+		if(!inFlight.tryAcquire()){
+			return BUSY;
+		}
+		//The permit is held until the solve really stops, not just until the request is answered,
+		//so timed out solves still count against the limit while they wind down.
+		AtomicInteger state = new AtomicInteger(QUEUED);
+		Future<String> result = solves.submit(() -> {
+			if(!state.compareAndSet(QUEUED, RUNNING)){
+				return null;
+			}
+			try {
+				return solver.solve(ints);
+			} finally {
+				inFlight.release();
+			}
+		});
+		try {
+			String equation = result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return equation == null ? "No equation possible." : equation;
+		} catch (TimeoutException ex) {
+			abandon(result, state);
+			return TIMEOUT;
+		} catch (ExecutionException ex) {
+			return ex.getCause() instanceof IllegalArgumentException ? "Invalid puzzle." : "Error.";
+		} catch (InterruptedException ex) {
+			abandon(result, state);
+			Thread.currentThread().interrupt();
+			return TIMEOUT;
+		}
+	}
+
+	private void abandon(Future<String> result, AtomicInteger state){
+		if(state.compareAndSet(QUEUED, ABANDONED)){
+			inFlight.release();
+		}
+		result.cancel(true);
+	}
+
+	/**
+	 * Stops accepting connections and releases the socket.
+	 * @throws IOException if the socket can't be closed.
+	 */
+	void close() throws IOException {
+		channel.close();
+		connections.shutdownNow();
+		solves.shutdownNow();
+		if(socketFile != null){
+			Files.deleteIfExists(socketFile);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A hash join that keeps only the smaller side of a split, as its distinct values each with the
+ * smallest ordinal reaching them, and streams the larger side through it without storing it.
+ * Memory is bounded by the smaller side instead of by 3^(n-1) values, so much longer puzzles fit.
+ * The match is the one the other joins report: the smallest left-hand ordinal with a match,
+ * then the smallest right-hand ordinal for it.
+ * With a batch evaluator (--vector), the last few positions of each side are filled a block at a time
+ * through getCombinations and the block is then stored or streamed in ordinal order.
+ */
+class StreamingJoin {
+
+	//With a batch evaluator, subtrees of at most this many leaves are filled as one block.
+	static final int BLOCK_LEAVES = 1 << 12;
+
+	final OperationInsertion solver;
+	final int[] ints;
+	//Polled every CHECK_INTERVAL leaves to abandon the join early, or null.
+	final BooleanSupplier cancelled;
+	//How many trailing positions a block covers, and the block they are filled into; null without a batch evaluator.
+	final int blockPositions;
+	private final double[] block;
+
+	long leaves;
+
+	private RangeValues stored;
+	private long bestLhs;
+	private long bestRhs;
+
+	StreamingJoin(OperationInsertion solver, int[] ints){
+		this(solver, ints, null);
+	}
+
+	/**
+	 * @param solver the solver whose operators and enumeration are used.
+	 * @param ints the numbers of the puzzle.
+	 * @param cancelled polled every CHECK_INTERVAL leaves; when it returns true, join throws CancellationException.
+	 */
+	StreamingJoin(OperationInsertion solver, int[] ints, BooleanSupplier cancelled){
+		this.solver = solver;
+		this.ints = ints;
+		this.cancelled = cancelled;
+		int positions = 0;
+		for (long size = solver.operators.length; solver.operators.length > 1 && size <= BLOCK_LEAVES; size *= solver.operators.length) {
+			positions++;
+		}
+		this.blockPositions = positions;
+		this.block = solver.batchEvaluator != null ? new double[solver.combinations(positions + 1)] : null;
+	}
+
+	//Stops the join if the thread was interrupted or the join was cancelled.
+	private void check(long leaves){
+		OperationInsertion.checkInterrupted(leaves);
+		if(cancelled != null && (leaves & (OperationInsertion.CHECK_INTERVAL - 1)) == 0 && cancelled.getAsBoolean()){
+			throw new CancellationException("Join cancelled");
+		}
+	}
+
+	//Whether the subtree from position to to is filled as one block.
+	private boolean inBlock(int position, int to){
+		return block != null && to - position <= blockPositions;
+	}
+
+	/**
+	 * Finds the first match of the split after e.
+	 * @param e the position of the last left-hand number.
+	 * @return the left-hand and right-hand ordinals, or null if there is no match.
+	 */
+	long[] join(int e){
+		int n = ints.length;
+		stored = new RangeValues(16);
+		leaves = 0;
+		long storedLeaves;
+		long[] match;
+		if(e + 1 > n - e - 1){
+			store(e+2, n, 0, '\0', ints[e+1], 0);
+			storedLeaves = leaves;
+			match = streamLhs(e+1, 1, 0, '\0', ints[0], 0);
+		}
+		else{
+			store(1, e+1, 0, '\0', ints[0], 0);
+			storedLeaves = leaves;
+			bestLhs = Long.MAX_VALUE;
+			streamRhs(n, e+2, 0, '\0', ints[e+1], 0);
+			match = bestLhs == Long.MAX_VALUE ? null : new long[]{bestLhs, bestRhs};
+		}
+		if(SolverMetrics.enabled){
+			SolverMetrics.INSTANCE.combinations.add(leaves);
+			SolverMetrics.INSTANCE.joinComparisons.add(leaves - storedLeaves);
+		}
+		return match;
+	}
+
+	private void store(int position, int to, double sum, char sign, double term, long ordinal){
+		if(inBlock(position, to)){
+			int size = solver.combinations(to - position + 1);
+			solver.getCombinations(block, ints, position, to, sum, sign, term, 0);
+			for (int i = 0; i < size; i++) {
+				check(++leaves);
+				stored.offer(block[i], ordinal * size + i);
+			}
+			return;
+		}
+		if(position == to){
+			check(++leaves);
+			stored.offer(solver.commit(sum, sign, term), ordinal);
+			return;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			if(c == '*'){
+				store(position + 1, to, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				store(position + 1, to, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
+		}
+	}
+
+	//Streams the left-hand side in order against the stored right-hand side, stopping at the first match.
+	private long[] streamLhs(int to, int position, double sum, char sign, double term, long ordinal){
+		if(inBlock(position, to)){
+			int size = solver.combinations(to - position + 1);
+			solver.getCombinations(block, ints, position, to, sum, sign, term, 0);
+			for (int i = 0; i < size; i++) {
+				check(++leaves);
+				long rhs = stored.code(block[i]);
+				if(rhs >= 0){
+					return new long[]{ordinal * size + i, rhs};
+				}
+			}
+			return null;
+		}
+		if(position == to){
+			check(++leaves);
+			long rhs = stored.code(solver.commit(sum, sign, term));
+			return rhs < 0 ? null : new long[]{ordinal, rhs};
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			long[] match;
+			if(c == '*'){
+				match = streamLhs(to, position + 1, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				match = streamLhs(to, position + 1, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
+			if(match != null){
+				return match;
+			}
+		}
+		return null;
+	}
+
+	//Streams the right-hand side in order against the stored left-hand side, keeping the smallest
+	//left-hand ordinal matched and the first right-hand ordinal matching it. Stops once nothing can beat it.
+	private boolean streamRhs(int to, int position, double sum, char sign, double term, long ordinal){
+		if(inBlock(position, to)){
+			int size = solver.combinations(to - position + 1);
+			solver.getCombinations(block, ints, position, to, sum, sign, term, 0);
+			for (int i = 0; i < size; i++) {
+				check(++leaves);
+				long lhs = stored.code(block[i]);
+				if(lhs >= 0 && lhs < bestLhs){
+					bestLhs = lhs;
+					bestRhs = ordinal * size + i;
+				}
+				if(bestLhs == 0){
+					return true;
+				}
+			}
+			return false;
+		}
+		if(position == to){
+			check(++leaves);
+			long lhs = stored.code(solver.commit(sum, sign, term));
+			if(lhs >= 0 && lhs < bestLhs){
+				bestLhs = lhs;
+				bestRhs = ordinal;
+			}
+			return bestLhs == 0;
+		}
+		char[] operators = solver.operators;
+		for (int k = 0; k < operators.length; k++) {
+			char c = operators[k];
+			boolean done;
+			if(c == '*'){
+				done = streamRhs(to, position + 1, sum, sign, term * ints[position], ordinal * operators.length + k);
+			}
+			else{
+				done = streamRhs(to, position + 1, solver.commit(sum, sign, term), c, ints[position], ordinal * operators.length + k);
+			}
+			if(done){
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -1,13 +1,26 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.*;
 import java.util.function.Function;
 //Daniel Fedorin's file.
 public class Utils {
 
     /**
-     * Common Scanner used in all string inputs.
-     * Opening a new one every time is just not worth it.
+     * Holds the common reader used in all string inputs.
+     * Opening a new one every time is just not worth it, and opening it only on the first read
+     * keeps Utils from setting up anything for stdin when it isn't read. It is a plain reader rather
+     * than a Scanner, which would load regular expressions and locale data just to read lines.
      */
-    private static Scanner stdin = new Scanner(System.in);
+    private static final class Stdin {
+        static final BufferedReader READER = new BufferedReader(new InputStreamReader(System.in));
+    }
 
     /**
      * A pair class, combining together two arbitrary types of elements
@@ -108,9 +121,19 @@ public class Utils {
     /**
      * Reads a string from the console.
      * @return the string that's been read.
+     * @throws NoSuchElementException if there are no more lines.
+     * @throws UncheckedIOException if reading fails.
      */
     static String getString(){
-        return stdin.nextLine();
+        try {
+            String line = Stdin.READER.readLine();
+            if(line == null){
+                throw new NoSuchElementException("No line found");
+            }
+            return line;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     /**
@@ -174,11 +197,40 @@ public class Utils {
     }
     /**
      * Converts a string to an array of integers.
+     * Numbers are runs of digits, '-' and '^', and anything else separates them, as if the string
+     * were split on the regular expression [^0-9^-]+, but without compiling one.
      * @param s the string to convert.
      * @return the resulting array of integers.
+     * @throws NumberFormatException if a run isn't an integer, or the string is empty or starts with a separator.
      */
     static int[] stringToInts(String s){
-        return Arrays.stream(s.split("[^0-9^-]+")).mapToInt(Integer::parseInt).toArray();
+        int[] ints = new int[8];
+        int count = 0, start = 0, length = s.length();
+        for(int i = 0; i <= length; i++){
+            if(i < length && isIntChar(s.charAt(i))){
+                continue;
+            }
+            if(i > start){
+                if(count == ints.length){
+                    ints = Arrays.copyOf(ints, count * 2);
+                }
+                ints[count++] = Integer.parseInt(s, start, i, 10);
+            }
+            start = i + 1;
+        }
+        if(length == 0 || (count > 0 && !isIntChar(s.charAt(0)))){
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        return Arrays.copyOf(ints, count);
+    }
+
+    /**
+     * Checks whether a character can be part of a number for stringToInts.
+     * @param c the character.
+     * @return true for digits, '-' and '^'.
+     */
+    private static boolean isIntChar(char c){
+        return (c >= '0' && c <= '9') || c == '-' || c == '^';
     }
     /**
      * Converts a string to an array of doubles.
@@ -196,7 +248,7 @@ public class Utils {
     /**
      * A single generic token to be pushed to the output of Shunting Yard.
      */
-    private static class ShuntingToken {
+    static class ShuntingToken {
         /**
          * Represents the token as a string.
          * @return the string representation of the token.
@@ -272,7 +324,7 @@ public class Utils {
      * A node in the Binary Tree representation of a
      * mathematical expression.
      */
-    private static class ShuntingTreeNode {
+    static class ShuntingTreeNode {
         /**
          * The token represented by this node.
          */
@@ -318,6 +370,406 @@ public class Utils {
         double eval(double a, double b);
     }
 
+    /**
+     * An interface used to implement an operation in exact arithmetic.
+     */
+    private interface ShuntingExactEvaluator {
+        Rational eval(Rational a, Rational b) throws ArithmeticException;
+    }
+
+    /**
+     * The arithmetic an evaluation configuration works in.
+     */
+    enum ShuntingArithmetic {
+        /**
+         * Every operation works on doubles.
+         */
+        DOUBLE,
+        /**
+         * Every operation is exact: longs while they do not overflow, then BigInteger-backed rationals.
+         */
+        EXACT
+    }
+
+    /**
+     * An exact rational number, kept in lowest terms with a positive denominator.
+     * Numbers whose parts fit in longs are computed with overflow-checked long arithmetic,
+     * and only move to BigInteger when an operation overflows.
+     */
+    static final class Rational implements Comparable<Rational> {
+        private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+        private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+        static final Rational ZERO = new Rational(0, 1);
+        static final Rational ONE = new Rational(1, 1);
+
+        /**
+         * The numerator and denominator, when the number is small.
+         */
+        private final long numerator, denominator;
+        /**
+         * The numerator and denominator, when the number is big; null otherwise.
+         */
+        private final BigInteger bigNumerator, bigDenominator;
+
+        /**
+         * Creates a small rational that is already in lowest terms.
+         * @param numerator the numerator.
+         * @param denominator the positive denominator.
+         */
+        private Rational(long numerator, long denominator){
+            this.numerator = numerator;
+            this.denominator = denominator;
+            this.bigNumerator = null;
+            this.bigDenominator = null;
+        }
+
+        /**
+         * Creates a big rational that is already in lowest terms.
+         * @param numerator the numerator.
+         * @param denominator the positive denominator.
+         */
+        private Rational(BigInteger numerator, BigInteger denominator){
+            this.numerator = 0;
+            this.denominator = 0;
+            this.bigNumerator = numerator;
+            this.bigDenominator = denominator;
+        }
+
+        /**
+         * Gets the rational for an integer.
+         * @param value the integer.
+         * @return the rational.
+         */
+        static Rational of(long value){
+            return value == 0 ? ZERO : value == 1 ? ONE : new Rational(value, 1);
+        }
+
+        /**
+         * Gets the rational for a fraction, reducing it.
+         * @param numerator the numerator.
+         * @param denominator the denominator.
+         * @return the rational.
+         * @throws ArithmeticException if the denominator is zero.
+         */
+        static Rational of(long numerator, long denominator) throws ArithmeticException {
+            if(denominator == 0){
+                throw new ArithmeticException("Division by zero");
+            }
+            if(denominator == Long.MIN_VALUE || numerator == Long.MIN_VALUE){
+                return of(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+            }
+            if(denominator < 0){
+                numerator = -numerator;
+                denominator = -denominator;
+            }
+            long gcd = gcd(Math.abs(numerator), denominator);
+            return new Rational(numerator / gcd, denominator / gcd);
+        }
+
+        /**
+         * Gets the rational for a big fraction, reducing it and going back to longs if it fits.
+         * @param numerator the numerator.
+         * @param denominator the denominator.
+         * @return the rational.
+         * @throws ArithmeticException if the denominator is zero.
+         */
+        static Rational of(BigInteger numerator, BigInteger denominator) throws ArithmeticException {
+            if(denominator.signum() == 0){
+                throw new ArithmeticException("Division by zero");
+            }
+            if(denominator.signum() < 0){
+                numerator = numerator.negate();
+                denominator = denominator.negate();
+            }
+            BigInteger gcd = numerator.gcd(denominator);
+            if(!gcd.equals(BigInteger.ONE) && gcd.signum() != 0){
+                numerator = numerator.divide(gcd);
+                denominator = denominator.divide(gcd);
+            }
+            if(fitsLong(numerator) && fitsLong(denominator)){
+                return new Rational(numerator.longValue(), denominator.longValue());
+            }
+            return new Rational(numerator, denominator);
+        }
+
+        /**
+         * Gets the exact rational value of a double.
+         * @param value the double.
+         * @return the rational.
+         * @throws ArithmeticException if the double is infinite or NaN.
+         */
+        static Rational of(double value) throws ArithmeticException {
+            if(value == (long) value && value != 0x1p63){
+                return of((long) value);
+            }
+            if(Double.isNaN(value) || Double.isInfinite(value)){
+                throw new ArithmeticException("Not a finite number: " + value);
+            }
+            BigDecimal decimal = new BigDecimal(value);
+            return decimal.scale() > 0
+                    ? of(decimal.unscaledValue(), BigInteger.TEN.pow(decimal.scale()))
+                    : of(decimal.toBigInteger(), BigInteger.ONE);
+        }
+
+        boolean isBig(){
+            return bigNumerator != null;
+        }
+
+        BigInteger numerator(){
+            return isBig() ? bigNumerator : BigInteger.valueOf(numerator);
+        }
+
+        BigInteger denominator(){
+            return isBig() ? bigDenominator : BigInteger.valueOf(denominator);
+        }
+
+        boolean isInteger(){
+            return isBig() ? bigDenominator.equals(BigInteger.ONE) : denominator == 1;
+        }
+
+        Rational add(Rational other){
+            if(!isBig() && !other.isBig()){
+                try {
+                    if(denominator == 1 && other.denominator == 1){
+                        return of(Math.addExact(numerator, other.numerator));
+                    }
+                    return of(Math.addExact(Math.multiplyExact(numerator, other.denominator), Math.multiplyExact(other.numerator, denominator)),
+                            Math.multiplyExact(denominator, other.denominator));
+                } catch (ArithmeticException overflow) {
+                    //fall through to BigInteger
+                }
+            }
+            return of(numerator().multiply(other.denominator()).add(other.numerator().multiply(denominator())),
+                    denominator().multiply(other.denominator()));
+        }
+
+        Rational negate(){
+            if(!isBig() && numerator != Long.MIN_VALUE){
+                return new Rational(-numerator, denominator);
+            }
+            return of(numerator().negate(), denominator());
+        }
+
+        Rational subtract(Rational other){
+            return add(other.negate());
+        }
+
+        Rational multiply(Rational other){
+            if(!isBig() && !other.isBig()){
+                try {
+                    if(denominator == 1 && other.denominator == 1){
+                        return of(Math.multiplyExact(numerator, other.numerator));
+                    }
+                    return of(Math.multiplyExact(numerator, other.numerator), Math.multiplyExact(denominator, other.denominator));
+                } catch (ArithmeticException overflow) {
+                    //fall through to BigInteger
+                }
+            }
+            return of(numerator().multiply(other.numerator()), denominator().multiply(other.denominator()));
+        }
+
+        Rational divide(Rational other) throws ArithmeticException {
+            if(other.signum() == 0){
+                throw new ArithmeticException("Division by zero");
+            }
+            return multiply(other.reciprocal());
+        }
+
+        Rational reciprocal() throws ArithmeticException {
+            return isBig() ? of(bigDenominator, bigNumerator) : of(denominator, numerator);
+        }
+
+        /**
+         * Raises this number to an integer power.
+         * @param exponent the exponent, which has to be an integer.
+         * @return the result.
+         * @throws ArithmeticException if the exponent is not an integer, is too big, or 0 is raised to a negative power.
+         */
+        Rational pow(Rational exponent) throws ArithmeticException {
+            if(!exponent.isInteger() || exponent.isBig() || Math.abs(exponent.numerator) > 100_000){
+                throw new ArithmeticException("Exponent cannot be computed exactly: " + exponent);
+            }
+            int power = (int) exponent.numerator;
+            Rational base = power < 0 ? reciprocal() : this;
+            if(!base.isBig() && base.denominator == 1){
+                long result = 1, factor = base.numerator;
+                try {
+                    for(int i = Math.abs(power); i > 0; i >>= 1){
+                        if((i & 1) != 0){
+                            result = Math.multiplyExact(result, factor);
+                        }
+                        if(i > 1){
+                            factor = Math.multiplyExact(factor, factor);
+                        }
+                    }
+                    return of(result);
+                } catch (ArithmeticException overflow) {
+                    //fall through to BigInteger
+                }
+            }
+            return of(base.numerator().pow(Math.abs(power)), base.denominator().pow(Math.abs(power)));
+        }
+
+        int signum(){
+            return isBig() ? bigNumerator.signum() : Long.signum(numerator);
+        }
+
+        /**
+         * Gets the double nearest to the rational, ties to even, like the division of two exact doubles.
+         * The quotient is computed with at least 55 significant bits and a sticky bit for the remainder,
+         * so that rounding it once to the 53 bits of a double gives the correctly rounded result.
+         * @return the double.
+         */
+        double doubleValue(){
+            if(!isBig() && denominator == 1){
+                return (double) numerator;
+            }
+            if(!isBig() && Math.abs(numerator) < (1L << 53) && denominator < (1L << 53)){
+                return (double) numerator / denominator;
+            }
+            BigInteger dividend = numerator().abs(), divisor = denominator();
+            if(divisor.equals(BigInteger.ONE)){
+                return numerator().doubleValue();
+            }
+            //Doubles have no bits below 2^-1074, so scaling stops two bits past those.
+            int shift = Math.min(55 - (dividend.bitLength() - divisor.bitLength()), 1076);
+            BigInteger[] division = shift >= 0
+                    ? dividend.shiftLeft(shift).divideAndRemainder(divisor)
+                    : dividend.divideAndRemainder(divisor.shiftLeft(-shift));
+            BigInteger quotient = division[0];
+            if(division[1].signum() != 0){
+                quotient = quotient.setBit(0);
+            }
+            double magnitude;
+            if(shift == 1076 && quotient.bitLength() <= 55){
+                //Below 2^-1021 the double is a whole number of units of 2^-1074: round to those by hand.
+                long units = quotient.longValue();
+                long rounded = units >> 2;
+                long rest = units & 3;
+                if(rest > 2 || (rest == 2 && (rounded & 1) != 0)){
+                    rounded++;
+                }
+                magnitude = Math.scalb((double) rounded, -1074);
+            }
+            else{
+                magnitude = Math.scalb(quotient.doubleValue(), -shift);
+            }
+            return signum() < 0 ? -magnitude : magnitude;
+        }
+
+        @Override
+        public int compareTo(Rational other){
+            if(!isBig() && !other.isBig() && denominator == 1 && other.denominator == 1){
+                return Long.compare(numerator, other.numerator);
+            }
+            return numerator().multiply(other.denominator()).compareTo(other.numerator().multiply(denominator()));
+        }
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof Rational)){
+                return false;
+            }
+            Rational rational = (Rational) other;
+            if(isBig() != rational.isBig()){
+                return false;
+            }
+            return isBig() ? bigNumerator.equals(rational.bigNumerator) && bigDenominator.equals(rational.bigDenominator)
+                    : numerator == rational.numerator && denominator == rational.denominator;
+        }
+
+        @Override
+        public int hashCode(){
+            return isBig() ? bigNumerator.hashCode() * 31 + bigDenominator.hashCode()
+                    : Long.hashCode(numerator) * 31 + Long.hashCode(denominator);
+        }
+
+        @Override
+        public String toString(){
+            return isInteger() ? numerator().toString() : numerator() + "/" + denominator();
+        }
+
+        private static boolean fitsLong(BigInteger value){
+            return value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0;
+        }
+
+        private static long gcd(long a, long b){
+            while(b != 0){
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a == 0 ? 1 : a;
+        }
+    }
+
+    /*
+    The default operations, which FrozenEvaluationConfig recognizes and compiles to their own opcodes.
+    They are instances of a plain class rather than lambdas, so that creating the default configuration
+    doesn't bootstrap the lambda machinery, which costs more than a short solve on a cold JVM.
+     */
+    private static final DefaultOperation ADD = new DefaultOperation(CompiledExpression.ADD);
+    private static final DefaultOperation SUBTRACT = new DefaultOperation(CompiledExpression.SUBTRACT);
+    private static final DefaultOperation MULTIPLY = new DefaultOperation(CompiledExpression.MULTIPLY);
+    private static final DefaultOperation DIVIDE = new DefaultOperation(CompiledExpression.DIVIDE);
+    private static final DefaultOperation POWER = new DefaultOperation(CompiledExpression.POWER);
+    private static final ShuntingExactEvaluator EXACT_ADD = ADD;
+    private static final ShuntingExactEvaluator EXACT_SUBTRACT = SUBTRACT;
+    private static final ShuntingExactEvaluator EXACT_MULTIPLY = MULTIPLY;
+    private static final ShuntingExactEvaluator EXACT_DIVIDE = DIVIDE;
+    private static final ShuntingExactEvaluator EXACT_POWER = POWER;
+
+    /**
+     * One of the default operations, in both double and exact arithmetic.
+     */
+    private static final class DefaultOperation implements ShuntingEvaluator, ShuntingExactEvaluator {
+        /**
+         * The CompiledExpression opcode of the operation.
+         */
+        private final byte opcode;
+
+        /**
+         * Creates a default operation.
+         * @param opcode the CompiledExpression opcode of the operation.
+         */
+        DefaultOperation(byte opcode){
+            this.opcode = opcode;
+        }
+
+        @Override
+        public double eval(double a, double b){
+            switch (opcode) {
+                case CompiledExpression.ADD:
+                    return a + b;
+                case CompiledExpression.SUBTRACT:
+                    return a - b;
+                case CompiledExpression.MULTIPLY:
+                    return a * b;
+                case CompiledExpression.DIVIDE:
+                    return a / b;
+                default:
+                    return Math.pow(a, b);
+            }
+        }
+
+        @Override
+        public Rational eval(Rational a, Rational b) throws ArithmeticException {
+            switch (opcode) {
+                case CompiledExpression.ADD:
+                    return a.add(b);
+                case CompiledExpression.SUBTRACT:
+                    return a.subtract(b);
+                case CompiledExpression.MULTIPLY:
+                    return a.multiply(b);
+                case CompiledExpression.DIVIDE:
+                    return a.divide(b);
+                default:
+                    return a.pow(b);
+            }
+        }
+    }
+
     /**
      * An enum that holds an operation's associativity.
      */
@@ -341,6 +793,10 @@ public class Utils {
          * The evaluator to perform this operation on numbers.
          */
         ShuntingEvaluator evaluator;
+        /**
+         * The evaluator to perform this operation exactly, or null if it can't be.
+         */
+        ShuntingExactEvaluator exactEvaluator;
         /**
          * The associativity of the operation.
          */
@@ -350,11 +806,14 @@ public class Utils {
          * Creates a new operation, setting its values to ones given here.
          * @param precedence the precedence of the operation.
          * @param evaluator the evaluator of the operation.
+         * @param exactEvaluator the exact evaluator of the operation, or null.
          * @param associativity the associativity of the operation.
          */
-        ShuntingOperation(int precedence, ShuntingEvaluator evaluator, ShuntingAssociativity associativity){
+        ShuntingOperation(int precedence, ShuntingEvaluator evaluator, ShuntingExactEvaluator exactEvaluator,
+                          ShuntingAssociativity associativity){
             this.precedence = precedence;
             this.evaluator = evaluator;
+            this.exactEvaluator = exactEvaluator;
             this.associativity = associativity;
         }
     }
@@ -372,6 +831,14 @@ public class Utils {
          * The variables to use in evaluating the expression.
          */
         HashMap<String, Double> variables;
+        /**
+         * The arithmetic that expressions are evaluated in.
+         */
+        ShuntingArithmetic arithmetic;
+        /**
+         * The frozen form of this configuration, or null if it changed since it was last frozen.
+         */
+        private FrozenEvaluationConfig frozen;
 
         /**
          * Creates a new evaluation configuration, with no operation.
@@ -379,6 +846,7 @@ public class Utils {
         ShuntingEvaluationConfig(){
             operations = new HashMap<>();
             variables = new HashMap<>();
+            arithmetic = ShuntingArithmetic.DOUBLE;
         }
 
         /**
@@ -391,7 +859,33 @@ public class Utils {
          */
         ShuntingEvaluationConfig register(char operation, int precedence,
                                           ShuntingEvaluator evaluator, ShuntingAssociativity associativity){
-            operations.put(operation, new ShuntingOperation(precedence, evaluator, associativity));
+            return register(operation, precedence, evaluator, null, associativity);
+        }
+
+        /**
+         * Registers a single operation with this configuration, along with its exact version.
+         * @param operation the operation to register.
+         * @param precedence the precedence of the new operation.
+         * @param evaluator the evaluator of the new operation.
+         * @param exactEvaluator the evaluator used in exact arithmetic.
+         * @param associativity the associativity of the new operation.
+         * @return the configuration, for chaining.
+         */
+        ShuntingEvaluationConfig register(char operation, int precedence, ShuntingEvaluator evaluator,
+                                          ShuntingExactEvaluator exactEvaluator, ShuntingAssociativity associativity){
+            operations.put(operation, new ShuntingOperation(precedence, evaluator, exactEvaluator, associativity));
+            frozen = null;
+            return this;
+        }
+
+        /**
+         * Sets the arithmetic expressions are evaluated in.
+         * @param arithmetic the arithmetic to use.
+         * @return the configuration, for chaining.
+         */
+        ShuntingEvaluationConfig arithmetic(ShuntingArithmetic arithmetic){
+            this.arithmetic = arithmetic;
+            frozen = null;
             return this;
         }
 
@@ -403,20 +897,39 @@ public class Utils {
          */
         ShuntingEvaluationConfig variable(String var, double value){
             variables.put(var, value);
+            int slot = (frozen != null) ? frozen.slot(var) : -1;
+            if(slot >= 0){
+                frozen.set(slot, value);
+            } else {
+                frozen = null;
+            }
             return this;
         }
 
+        /**
+         * Freezes the configuration into dense tables for compiling expressions.
+         * The frozen form is kept until an operation, a new variable or the arithmetic changes;
+         * setting a variable that already exists updates the frozen form in place.
+         * @return the frozen configuration.
+         */
+        FrozenEvaluationConfig freeze(){
+            if(frozen == null){
+                frozen = new FrozenEvaluationConfig(this);
+            }
+            return frozen;
+        }
+
         /**
          * Creates a default configuration.
          * @return the default configuration.
          */
         static ShuntingEvaluationConfig createDefault(){
             return new ShuntingEvaluationConfig()
-                    .register('+', 1, (a, b) -> a + b, ShuntingAssociativity.LEFT)
-                    .register('-', 1, (a, b) -> a - b, ShuntingAssociativity.LEFT)
-                    .register('*', 2, (a, b) -> a * b, ShuntingAssociativity.LEFT)
-                    .register('/', 2, (a, b) -> a / b, ShuntingAssociativity.LEFT)
-                    .register('^', 3, Math::pow, ShuntingAssociativity.RIGHT);
+                    .register('+', 1, ADD, EXACT_ADD, ShuntingAssociativity.LEFT)
+                    .register('-', 1, SUBTRACT, EXACT_SUBTRACT, ShuntingAssociativity.LEFT)
+                    .register('*', 2, MULTIPLY, EXACT_MULTIPLY, ShuntingAssociativity.LEFT)
+                    .register('/', 2, DIVIDE, EXACT_DIVIDE, ShuntingAssociativity.LEFT)
+                    .register('^', 3, POWER, EXACT_POWER, ShuntingAssociativity.RIGHT);
         }
 
     }
@@ -427,7 +940,7 @@ public class Utils {
      * @param config the configuration file to pull info about operations from.
      * @return the result of the evaluation.
      */
-    private static double evaluateTree(ShuntingTreeNode root, ShuntingEvaluationConfig config){
+    static double evaluateTree(ShuntingTreeNode root, ShuntingEvaluationConfig config){
         if(root.data instanceof ShuntingInt){
             return ((ShuntingInt) root.data).value;
         } else if(root.data instanceof ShuntingString) {
@@ -445,7 +958,7 @@ public class Utils {
      * @param tokens the tokens to use to build the tree.
      * @return the resulting tree.
      */
-    private static ShuntingTreeNode buildtree(Stack<ShuntingToken> tokens){
+    static ShuntingTreeNode buildtree(Stack<ShuntingToken> tokens){
         ShuntingToken currentToken = tokens.pop();
         ShuntingTreeNode right = (currentToken instanceof ShuntingChar) ? buildtree(tokens) : null;
         ShuntingTreeNode left = (currentToken instanceof ShuntingChar) ? buildtree(tokens) : null;
@@ -457,7 +970,7 @@ public class Utils {
      * @param config the configuration from which to pull the operation data.
      * @return a stack of ShuntingTokens, which represent the tokens extracted from the string, pushed onto the stack in their resulting order.
      */
-    private static Stack<ShuntingToken> performShuntingYard(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
+    static Stack<ShuntingToken> performShuntingYard(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
         char[] array = expression.toCharArray();
         int index = 0;
         Stack<ShuntingChar> shuntingStack = new Stack<>();
@@ -526,15 +1039,1072 @@ public class Utils {
     }
 
     /**
-     * Evaluates an expression by converting it to Shunting-Yard, building a tree, and evaluating that tree.
+     * Evaluates an expression by compiling it and running the compiled program.
      * @param expression the expression to convert.
      * @param config the configuraton to use to convert the expression.
      * @return the result of converting the expression.
      * @throws ArithmeticException if the expression is incorrectly formatted.
      */
     static double evaluateExpression(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
-        Stack<ShuntingToken> tokens = performShuntingYard(expression, config);
-        ShuntingTreeNode tree = buildtree(tokens);
-        return evaluateTree(tree, config);
+        if(SolverMetrics.enabled){
+            SolverMetrics.INSTANCE.evaluations.increment();
+        }
+        FrozenEvaluationConfig frozen;
+        synchronized(config){
+            frozen = config.freeze();
+        }
+        //The cached expression may have been compiled against an equal configuration, so the variables are read from this one.
+        CompiledExpression compiled = EXPRESSIONS.get(expression, frozen);
+        if(frozen.arithmetic == ShuntingArithmetic.EXACT){
+            return compiled.evaluateExact(frozen.variableValues).doubleValue();
+        }
+        return compiled.evaluate(new double[compiled.stackSize()], frozen.variableValues);
+    }
+
+    /**
+     * The expressions compiled by evaluateExpression, shared by every thread.
+     */
+    static final ExpressionCache EXPRESSIONS = new ExpressionCache(1024);
+
+    /**
+     * A bounded cache from expression strings to compiled expressions, evicting the least recently used.
+     * Expressions are cached per configuration value: configurations with the same operations, variable
+     * names and arithmetic share their compiled expressions, whatever the values of their variables.
+     * Changing an operation or adding a variable compiles them again, while setting a variable does not.
+     * All methods are safe to call from several threads at once.
+     */
+    static final class ExpressionCache {
+        /**
+         * The most expressions kept at once.
+         */
+        final int capacity;
+        /**
+         * The compiled expressions, in access order.
+         */
+        private final LinkedHashMap<ExpressionKey, CompiledExpression> expressions;
+        /**
+         * How many lookups found their expression already compiled.
+         */
+        private long hits;
+        /**
+         * How many lookups had to compile their expression.
+         */
+        private long misses;
+
+        /**
+         * Creates an empty cache.
+         * @param capacity the most expressions to keep at once.
+         */
+        ExpressionCache(int capacity){
+            this.capacity = capacity;
+            this.expressions = new LinkedHashMap<ExpressionKey, CompiledExpression>(16, 0.75f, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ExpressionKey, CompiledExpression> eldest){
+                    return size() > ExpressionCache.this.capacity;
+                }
+            };
+        }
+
+        /**
+         * Gets the compiled form of an expression, compiling it if it isn't cached.
+         * The result is shared; every way of evaluating it can be called from several threads at once.
+         * It may have been compiled against another configuration equal to this one, whose variables
+         * it reads by default; pass the configuration's own values to evaluateWith to read those.
+         * @param expression the expression.
+         * @param config the configuration to compile it with.
+         * @return the compiled expression.
+         * @throws ArithmeticException if the expression is incorrectly formatted.
+         */
+        CompiledExpression get(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
+            FrozenEvaluationConfig frozen;
+            synchronized(config){
+                frozen = config.freeze();
+            }
+            return get(expression, frozen);
+        }
+
+        /**
+         * Gets the compiled form of an expression for a frozen configuration, compiling it if it isn't cached.
+         * @param expression the expression.
+         * @param frozen the frozen configuration to compile it with.
+         * @return the compiled expression, which may read the variables of an equal configuration.
+         * @throws ArithmeticException if the expression is incorrectly formatted.
+         */
+        CompiledExpression get(String expression, FrozenEvaluationConfig frozen) throws ArithmeticException {
+            ExpressionKey key = new ExpressionKey(expression, frozen);
+            synchronized(this){
+                CompiledExpression compiled = expressions.get(key);
+                if(compiled != null){
+                    hits++;
+                    return compiled;
+                }
+                misses++;
+            }
+            CompiledExpression compiled = compileExpression(expression, frozen);
+            synchronized(this){
+                expressions.put(key, compiled);
+            }
+            return compiled;
+        }
+
+        /**
+         * Gets how many lookups found their expression already compiled.
+         * @return the number of hits.
+         */
+        synchronized long hits(){
+            return hits;
+        }
+
+        /**
+         * Gets how many lookups had to compile their expression.
+         * @return the number of misses.
+         */
+        synchronized long misses(){
+            return misses;
+        }
+
+        /**
+         * Gets the fraction of lookups that were hits.
+         * @return the hit rate, or 0 if there were no lookups.
+         */
+        synchronized double hitRate(){
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        /**
+         * Removes every expression and resets the statistics.
+         */
+        synchronized void clear(){
+            expressions.clear();
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    /**
+     * An expression string together with the frozen configuration it is compiled against, compared by value.
+     */
+    private static final class ExpressionKey {
+        /**
+         * The expression.
+         */
+        final String expression;
+        /**
+         * The frozen configuration, compared with equals.
+         */
+        final FrozenEvaluationConfig config;
+
+        /**
+         * Creates a key.
+         * @param expression the expression.
+         * @param config the frozen configuration.
+         */
+        ExpressionKey(String expression, FrozenEvaluationConfig config){
+            this.expression = expression;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof ExpressionKey)){
+                return false;
+            }
+            ExpressionKey other = (ExpressionKey) o;
+            return expression.equals(other.expression) && config.equals(other.config);
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * expression.hashCode() + config.hashCode();
+        }
+    }
+
+    /**
+     * Evaluates an expression exactly, whatever arithmetic the configuration is set to.
+     * @param expression the expression to evaluate.
+     * @param config the configuration to use to convert the expression.
+     * @return the exact result.
+     * @throws ArithmeticException if the expression is incorrectly formatted, or can't be evaluated exactly.
+     */
+    static Rational evaluateExpressionExact(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
+        return compileExpression(expression, config).evaluateExact();
+    }
+
+    /**
+     * Evaluates an expression by converting it to Shunting-Yard, building a tree, and evaluating that tree.
+     * This is the original pipeline that compileExpression replaces; it gives the same results.
+     * @param expression the expression to convert.
+     * @param config the configuraton to use to convert the expression.
+     * @return the result of converting the expression.
+     * @throws ArithmeticException if the expression is incorrectly formatted.
+     */
+    static double evaluateExpressionTree(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
+        Stack<ShuntingToken> tokens = performShuntingYard(expression, config);
+        ShuntingTreeNode tree = buildtree(tokens);
+        return evaluateTree(tree, config);
+    }
+
+    /**
+     * A configuration frozen into dense tables indexed by operation character, so that compiling
+     * an expression needs no map lookups and no boxing of characters.
+     * The default operations are recognized and given their own opcodes; other operations
+     * go through their evaluators. Variables get slot numbers, whose values can still be changed.
+     */
+    static final class FrozenEvaluationConfig {
+        /*
+        What kind of operation each character is: NONE if it isn't one, one of the
+        CompiledExpression opcodes for the default operations, or APPLY for the others.
+         */
+        static final byte NONE = -1;
+
+        /**
+         * The kind of each operation character, NONE if it isn't one.
+         */
+        final byte[] kinds;
+        /**
+         * The precedence of each operation character.
+         */
+        final int[] precedences;
+        /**
+         * Whether each operation character is right-associative.
+         */
+        final boolean[] rightAssociative;
+        /**
+         * The evaluator of each operation character.
+         */
+        final ShuntingEvaluator[] evaluators;
+        /**
+         * The exact evaluator of each operation character, null where there is none.
+         */
+        final ShuntingExactEvaluator[] exactEvaluators;
+        /**
+         * The names of the variable slots.
+         */
+        final String[] variableNames;
+        /**
+         * The values of the variable slots.
+         */
+        final double[] variableValues;
+        /**
+         * The arithmetic expressions are evaluated in.
+         */
+        final ShuntingArithmetic arithmetic;
+        /**
+         * The hash code, computed once since everything it covers is fixed.
+         */
+        private final int hash;
+
+        /**
+         * Freezes a configuration.
+         * @param config the configuration to freeze.
+         */
+        FrozenEvaluationConfig(ShuntingEvaluationConfig config){
+            int size = 1;
+            for(char c : config.operations.keySet()){
+                size = Math.max(size, c + 1);
+            }
+            kinds = new byte[size];
+            precedences = new int[size];
+            rightAssociative = new boolean[size];
+            evaluators = new ShuntingEvaluator[size];
+            exactEvaluators = new ShuntingExactEvaluator[size];
+            Arrays.fill(kinds, NONE);
+            for(Map.Entry<Character, ShuntingOperation> entry : config.operations.entrySet()){
+                char c = entry.getKey();
+                ShuntingOperation operation = entry.getValue();
+                kinds[c] = kind(operation);
+                precedences[c] = operation.precedence;
+                rightAssociative[c] = operation.associativity == ShuntingAssociativity.RIGHT;
+                evaluators[c] = operation.evaluator;
+                exactEvaluators[c] = operation.exactEvaluator;
+            }
+            variableNames = config.variables.keySet().toArray(new String[0]);
+            variableValues = new double[variableNames.length];
+            for(int i = 0; i < variableNames.length; i++){
+                variableValues[i] = config.variables.get(variableNames[i]);
+            }
+            arithmetic = config.arithmetic;
+            hash = Objects.hash(Arrays.hashCode(kinds), Arrays.hashCode(precedences), Arrays.hashCode(rightAssociative),
+                    identityHash(evaluators), identityHash(exactEvaluators), Arrays.hashCode(variableNames), arithmetic);
+        }
+
+        /**
+         * Hashes the elements of an array by identity, the way equals compares evaluators.
+         * @param array the array.
+         * @return the hash code.
+         */
+        private static int identityHash(Object[] array){
+            int hash = 1;
+            for(Object element : array){
+                hash = 31 * hash + System.identityHashCode(element);
+            }
+            return hash;
+        }
+
+        /**
+         * Checks whether two arrays hold the same objects in the same places.
+         * @param a one array.
+         * @param b the other array.
+         * @return true if every element of a is the element of b at the same index.
+         */
+        private static boolean sameElements(Object[] a, Object[] b){
+            if(a.length != b.length){
+                return false;
+            }
+            for(int i = 0; i < a.length; i++){
+                if(a[i] != b[i]){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether another frozen configuration compiles every expression the same way: it has the same
+         * operations, with the same evaluator objects, variable names and arithmetic. The values of the variables
+         * are not compared.
+         * @param o the other object.
+         * @return true if expressions compiled against either can be evaluated with the variables of the other.
+         */
+        @Override
+        public boolean equals(Object o){
+            if(this == o){
+                return true;
+            }
+            if(!(o instanceof FrozenEvaluationConfig)){
+                return false;
+            }
+            FrozenEvaluationConfig other = (FrozenEvaluationConfig) o;
+            return hash == other.hash && arithmetic == other.arithmetic
+                    && Arrays.equals(kinds, other.kinds) && Arrays.equals(precedences, other.precedences)
+                    && Arrays.equals(rightAssociative, other.rightAssociative)
+                    && sameElements(evaluators, other.evaluators) && sameElements(exactEvaluators, other.exactEvaluators)
+                    && Arrays.equals(variableNames, other.variableNames);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+
+        /**
+         * Works out which opcode an operation can use.
+         * @param operation the operation.
+         * @return the opcode of the default operation it is, or APPLY.
+         */
+        private static byte kind(ShuntingOperation operation){
+            ShuntingEvaluator evaluator = operation.evaluator;
+            ShuntingExactEvaluator exact = operation.exactEvaluator;
+            if(evaluator == ADD && exact == EXACT_ADD){
+                return CompiledExpression.ADD;
+            } else if(evaluator == SUBTRACT && exact == EXACT_SUBTRACT){
+                return CompiledExpression.SUBTRACT;
+            } else if(evaluator == MULTIPLY && exact == EXACT_MULTIPLY){
+                return CompiledExpression.MULTIPLY;
+            } else if(evaluator == DIVIDE && exact == EXACT_DIVIDE){
+                return CompiledExpression.DIVIDE;
+            } else if(evaluator == POWER && exact == EXACT_POWER){
+                return CompiledExpression.POWER;
+            }
+            return CompiledExpression.APPLY;
+        }
+
+        /**
+         * Checks whether a character is an operation.
+         * @param c the character.
+         * @return true if it is a registered operation.
+         */
+        boolean isOperation(char c){
+            return c < kinds.length && kinds[c] != NONE;
+        }
+
+        /**
+         * Applies an operation to two values.
+         * @param operation the operation character, which must be registered.
+         * @param left the left operand.
+         * @param right the right operand.
+         * @return the result of the operation.
+         */
+        double apply(char operation, double left, double right){
+            return evaluators[operation].eval(left, right);
+        }
+
+        /**
+         * Finds the slot of a variable.
+         * @param name the name of the variable.
+         * @return the slot, or -1 if the variable isn't registered.
+         */
+        int slot(String name){
+            for(int i = 0; i < variableNames.length; i++){
+                if(variableNames[i].equals(name)){
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Sets the value of a variable slot, for every expression compiled against this configuration.
+         * @param slot the slot.
+         * @param value the new value.
+         */
+        void set(int slot, double value){
+            variableValues[slot] = value;
+        }
+    }
+
+    /**
+     * An expression compiled into a flat postfix program.
+     * Each instruction is an opcode and an operand. Pushes index into the constant table or the
+     * variable slots of the frozen configuration; the default operations have their own opcodes,
+     * and APPLY indexes into the table of the other operations' evaluators.
+     */
+    static class CompiledExpression {
+        /**
+         * Pushes constants[operand].
+         */
+        static final byte PUSH_CONSTANT = 0;
+        /**
+         * Pushes the value of the variable slot operand.
+         */
+        static final byte PUSH_VARIABLE = 1;
+        /**
+         * Pops two values and pushes evaluators[operand] applied to them.
+         */
+        static final byte APPLY = 2;
+        /*
+        Pop two values and push the result of the default operation.
+         */
+        static final byte ADD = 3;
+        static final byte SUBTRACT = 4;
+        static final byte MULTIPLY = 5;
+        static final byte DIVIDE = 6;
+        static final byte POWER = 7;
+
+        /**
+         * The opcode of each instruction.
+         */
+        final byte[] opcodes;
+        /**
+         * The operand of each instruction.
+         */
+        final int[] operands;
+        /**
+         * The constants referenced by PUSH_CONSTANT.
+         */
+        final double[] constants;
+        /**
+         * The operations referenced by APPLY.
+         */
+        final ShuntingEvaluator[] evaluators;
+        /**
+         * The exact versions of the operations referenced by APPLY, null where there is none.
+         */
+        final ShuntingExactEvaluator[] exactEvaluators;
+        /**
+         * The configuration whose variable slots are read during evaluation.
+         */
+        final FrozenEvaluationConfig config;
+        /**
+         * The largest number of values on the stack at once, the size of the stacks evaluation allocates.
+         */
+        private final int maxDepth;
+
+        /**
+         * Creates a compiled expression from already-built tables.
+         * @param opcodes the opcode of each instruction.
+         * @param operands the operand of each instruction.
+         * @param constants the constant table.
+         * @param evaluators the evaluator table.
+         * @param exactEvaluators the exact evaluator table.
+         * @param maxDepth the largest number of values on the stack at once.
+         * @param config the configuration to read variables from.
+         */
+        CompiledExpression(byte[] opcodes, int[] operands, double[] constants,
+                           ShuntingEvaluator[] evaluators, ShuntingExactEvaluator[] exactEvaluators,
+                           int maxDepth, FrozenEvaluationConfig config){
+            this.opcodes = opcodes;
+            this.operands = operands;
+            this.constants = constants;
+            this.evaluators = evaluators;
+            this.exactEvaluators = exactEvaluators;
+            this.config = config;
+            this.maxDepth = maxDepth;
+        }
+
+        /**
+         * Finds the slot of a variable in the arrays passed to evaluateWith.
+         * @param name the name of the variable.
+         * @return the slot, or -1 if the configuration doesn't have the variable.
+         */
+        int slot(String name){
+            return config.slot(name);
+        }
+
+        /**
+         * Makes a variable array holding the configuration's current values, to be changed and passed to evaluateWith.
+         * @return a copy of the variable values.
+         */
+        double[] bindings(){
+            return config.variableValues.clone();
+        }
+
+        /**
+         * Gets the stack size needed to evaluate this expression.
+         * @return the largest number of values on the stack at once.
+         */
+        int stackSize(){
+            return maxDepth;
+        }
+
+        /**
+         * Evaluates the expression on a stack of its own for this call, so it can be called from several threads at once.
+         * @return the result of the evaluation.
+         */
+        double evaluate(){
+            return evaluate(new double[maxDepth]);
+        }
+
+        /**
+         * Evaluates the expression using the given stack.
+         * @param stack a stack of at least stackSize() elements.
+         * @return the result of the evaluation.
+         */
+        double evaluate(double[] stack){
+            return evaluate(stack, config.variableValues);
+        }
+
+        /**
+         * Evaluates the expression with the given variable values instead of the configuration's,
+         * on a stack of its own for this call.
+         * @param variables the value of every variable slot, see slot() and bindings().
+         * @return the result of the evaluation.
+         */
+        double evaluateWith(double[] variables){
+            return evaluate(new double[maxDepth], variables);
+        }
+
+        /**
+         * Evaluates the expression using the given stack and variable values.
+         * Touches no state of its own, so it can be called from any number of threads at once.
+         * @param stack a stack of at least stackSize() elements.
+         * @param variables the value of every variable slot.
+         * @return the result of the evaluation.
+         */
+        double evaluate(double[] stack, double[] variables){
+            int top = -1;
+            for(int i = 0; i < opcodes.length; i++){
+                int operand = operands[i];
+                switch (opcodes[i]) {
+                    case PUSH_CONSTANT:
+                        stack[++top] = constants[operand];
+                        break;
+                    case PUSH_VARIABLE:
+                        stack[++top] = variables[operand];
+                        break;
+                    case ADD:
+                        top--;
+                        stack[top] = stack[top] + stack[top + 1];
+                        break;
+                    case SUBTRACT:
+                        top--;
+                        stack[top] = stack[top] - stack[top + 1];
+                        break;
+                    case MULTIPLY:
+                        top--;
+                        stack[top] = stack[top] * stack[top + 1];
+                        break;
+                    case DIVIDE:
+                        top--;
+                        stack[top] = stack[top] / stack[top + 1];
+                        break;
+                    case POWER:
+                        top--;
+                        stack[top] = Math.pow(stack[top], stack[top + 1]);
+                        break;
+                    default:
+                        top--;
+                        stack[top] = evaluators[operand].eval(stack[top], stack[top + 1]);
+                        break;
+                }
+            }
+            return stack[top];
+        }
+
+        /**
+         * Evaluates the expression exactly, on longs while the values fit and with rationals otherwise.
+         * The stacks are allocated for this call, so it can be called from several threads at once.
+         * @return the exact result.
+         * @throws ArithmeticException if an operation has no exact version, or its result can't be exact.
+         */
+        Rational evaluateExact() throws ArithmeticException {
+            return evaluateExact(config.variableValues);
+        }
+
+        /**
+         * Evaluates the expression exactly with the given variable values instead of the configuration's.
+         * @param variables the value of every variable slot, see slot() and bindings().
+         * @return the exact result.
+         * @throws ArithmeticException if an operation has no exact version, or its result can't be exact.
+         */
+        Rational evaluateExact(double[] variables) throws ArithmeticException {
+            long[] longStack = new long[maxDepth];
+            if(evaluateLong(longStack, variables)){
+                return Rational.of(longStack[0]);
+            }
+            Rational[] values = new Rational[maxDepth];
+            int top = -1;
+            for(int i = 0; i < opcodes.length; i++){
+                int operand = operands[i];
+                byte opcode = opcodes[i];
+                if(opcode == PUSH_CONSTANT){
+                    values[++top] = Rational.of((long) constants[operand]);
+                    continue;
+                } else if(opcode == PUSH_VARIABLE){
+                    values[++top] = Rational.of(variables[operand]);
+                    continue;
+                }
+                Rational right = values[top--];
+                Rational left = values[top];
+                switch (opcode) {
+                    case ADD:
+                        values[top] = left.add(right);
+                        break;
+                    case SUBTRACT:
+                        values[top] = left.subtract(right);
+                        break;
+                    case MULTIPLY:
+                        values[top] = left.multiply(right);
+                        break;
+                    case DIVIDE:
+                        values[top] = left.divide(right);
+                        break;
+                    case POWER:
+                        values[top] = left.pow(right);
+                        break;
+                    default:
+                        if(exactEvaluators[operand] == null){
+                            throw new ArithmeticException("Operation has no exact version");
+                        }
+                        values[top] = exactEvaluators[operand].eval(left, right);
+                        break;
+                }
+            }
+            return values[top];
+        }
+
+        /**
+         * Evaluates the expression on longs, for expressions made of the default operations.
+         * Gives up if a value overflows, a division leaves a remainder, or a variable isn't a whole number.
+         * @param stack a stack of at least stackSize() elements; the result is left in stack[0].
+         * @param variables the value of every variable slot.
+         * @return true if the result was computed, false if evaluateExact has to use rationals.
+         */
+        boolean evaluateLong(long[] stack, double[] variables){
+            int top = -1;
+            try {
+                for(int i = 0; i < opcodes.length; i++){
+                    int operand = operands[i];
+                    switch (opcodes[i]) {
+                        case PUSH_CONSTANT:
+                            stack[++top] = (long) constants[operand];
+                            break;
+                        case PUSH_VARIABLE:
+                            double v = variables[operand];
+                            if(v != (long) v || v == 0x1p63){
+                                return false;
+                            }
+                            stack[++top] = (long) v;
+                            break;
+                        case ADD:
+                            top--;
+                            stack[top] = Math.addExact(stack[top], stack[top + 1]);
+                            break;
+                        case SUBTRACT:
+                            top--;
+                            stack[top] = Math.subtractExact(stack[top], stack[top + 1]);
+                            break;
+                        case MULTIPLY:
+                            top--;
+                            stack[top] = Math.multiplyExact(stack[top], stack[top + 1]);
+                            break;
+                        case DIVIDE:
+                            long left = stack[top - 1], right = stack[top];
+                            if(right == 0 || left % right != 0 || (left == Long.MIN_VALUE && right == -1)){
+                                return false;
+                            }
+                            stack[--top] = left / right;
+                            break;
+                        case POWER:
+                            long base = stack[top - 1], exponent = stack[top];
+                            if(exponent < 0 || exponent > 64){
+                                return false;
+                            }
+                            long result = 1;
+                            for(long p = 0; p < exponent; p++){
+                                result = Math.multiplyExact(result, base);
+                            }
+                            stack[--top] = result;
+                            break;
+                        default:
+                            return false;
+                    }
+                }
+            } catch (ArithmeticException overflow) {
+                return false;
+            }
+            stack[0] = stack[top];
+            return true;
+        }
+    }
+
+    /**
+     * Compiles an expression into a postfix program, using the same rules as performShuntingYard.
+     * The configuration is frozen first (see ShuntingEvaluationConfig.freeze), so variables
+     * that are registered afterwards are not seen by the compiled expression.
+     * @param expression the expression to compile.
+     * @param config the configuration from which to pull the operation data and variables.
+     * @return the compiled expression.
+     * @throws ArithmeticException if the expression is incorrectly formatted.
+     */
+    static CompiledExpression compileExpression(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
+        return compileExpression(expression, config.freeze());
+    }
+
+    /**
+     * Compiles an expression into a postfix program, using the same rules as performShuntingYard.
+     * Variables that the configuration doesn't have compile to the constant 0.
+     * @param expression the expression to compile.
+     * @param config the frozen configuration from which to pull the operation data and variable slots.
+     * @return the compiled expression.
+     * @throws ArithmeticException if the expression is incorrectly formatted.
+     */
+    static CompiledExpression compileExpression(String expression, FrozenEvaluationConfig config) throws ArithmeticException {
+        char[] array = expression.toCharArray();
+        int length = array.length;
+        byte[] opcodes = new byte[length];
+        int[] operands = new int[length];
+        double[] constants = new double[length + 1];
+        char[] applied = new char[length];
+        char[] pending = new char[length];
+        int pendingTop = -1;
+        int instructions = 0, constantCount = 0, appliedCount = 0;
+        int depth = 0, maxDepth = 0;
+        int index = 0;
+
+        while(index < length){
+            char c = array[index];
+            if(Character.isDigit(c)){
+                int value = 0;
+                while(index < length && Character.isDigit(array[index])){
+                    value = value * 10 + (array[index] - '0');
+                    index++;
+                }
+                constants[constantCount] = value;
+                opcodes[instructions] = CompiledExpression.PUSH_CONSTANT;
+                operands[instructions++] = constantCount++;
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if(config.isOperation(c)){
+                int precedence = config.precedences[c];
+                boolean right = config.rightAssociative[c];
+                while(pendingTop >= 0 && config.isOperation(pending[pendingTop])){
+                    int topPrecedence = config.precedences[pending[pendingTop]];
+                    if(!((!right && precedence <= topPrecedence) || (right && precedence < topPrecedence))){
+                        break;
+                    }
+                    instructions = emitOperation(pending[pendingTop--], config, opcodes, operands, instructions, applied, appliedCount);
+                    appliedCount = countApplied(opcodes, instructions, appliedCount);
+                    depth = checkApply(depth, expression);
+                }
+                pending[++pendingTop] = c;
+                index++;
+            } else if(c == '('){
+                pending[++pendingTop] = '(';
+                index++;
+            } else if(c == ')'){
+                while(pendingTop >= 0 && pending[pendingTop] != '('){
+                    instructions = emitOperation(pending[pendingTop--], config, opcodes, operands, instructions, applied, appliedCount);
+                    appliedCount = countApplied(opcodes, instructions, appliedCount);
+                    depth = checkApply(depth, expression);
+                }
+                if(pendingTop < 0){
+                    throw new ArithmeticException("Invalid infix expression: " + expression);
+                }
+                pendingTop--;
+                index++;
+            } else if(Character.isAlphabetic(c)){
+                int start = index;
+                while(index < length && Character.isAlphabetic(array[index])){
+                    index++;
+                }
+                int slot = config.slot(new String(array, start, index - start));
+                if(slot >= 0){
+                    opcodes[instructions] = CompiledExpression.PUSH_VARIABLE;
+                    operands[instructions++] = slot;
+                } else {
+                    constants[constantCount] = 0;
+                    opcodes[instructions] = CompiledExpression.PUSH_CONSTANT;
+                    operands[instructions++] = constantCount++;
+                }
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else {
+                index++;
+            }
+        }
+        while(pendingTop >= 0){
+            if(pending[pendingTop] == '('){
+                throw new ArithmeticException("Invalid infix expression: " + expression);
+            }
+            instructions = emitOperation(pending[pendingTop--], config, opcodes, operands, instructions, applied, appliedCount);
+            appliedCount = countApplied(opcodes, instructions, appliedCount);
+            depth = checkApply(depth, expression);
+        }
+        if(depth == 0){
+            throw new ArithmeticException("Invalid infix expression: " + expression);
+        }
+
+        ShuntingEvaluator[] evaluators = new ShuntingEvaluator[appliedCount];
+        ShuntingExactEvaluator[] exactEvaluators = new ShuntingExactEvaluator[appliedCount];
+        for(int i = 0; i < appliedCount; i++){
+            evaluators[i] = config.evaluators[applied[i]];
+            exactEvaluators[i] = config.exactEvaluators[applied[i]];
+        }
+        return new CompiledExpression(Arrays.copyOf(opcodes, instructions), Arrays.copyOf(operands, instructions),
+                Arrays.copyOf(constants, constantCount), evaluators, exactEvaluators, maxDepth, config);
+    }
+
+    /**
+     * Compiles an expression into a tree of method handles, which the JIT can inline into one piece of straight-line code.
+     * Expressions with operations other than the default ones are evaluated by the postfix interpreter instead.
+     * @param expression the expression to compile.
+     * @param config the configuration from which to pull the operation data and variables.
+     * @return the compiled expression.
+     * @throws ArithmeticException if the expression is incorrectly formatted.
+     */
+    static HandleExpression compileHandles(String expression, ShuntingEvaluationConfig config) throws ArithmeticException {
+        return new HandleExpression(compileExpression(expression, config));
+    }
+
+    /**
+     * A compiled expression turned into a method handle taking the variable values and returning the result.
+     * Every constant becomes a constant handle, every variable an array read of its slot, and every default
+     * operation a call combining the handles of its operands; operations on two constants are folded.
+     * The evaluators of other operations are lambdas the handle can't see through, so a program that
+     * applies any of them is run by the interpreter instead, and isCompiled() tells which was used.
+     * Holds no mutable state, so it can be evaluated from any number of threads at once.
+     */
+    static final class HandleExpression {
+        /**
+         * The type of an operation, two operands to a result.
+         */
+        private static final MethodType OPERATION = MethodType.methodType(double.class, double.class, double.class);
+        /**
+         * The type of a compiled program, the variable values to a result.
+         */
+        private static final MethodType PROGRAM = MethodType.methodType(double.class, double[].class);
+        /**
+         * The handle of each default operation, indexed by its opcode.
+         */
+        private static final MethodHandle[] OPERATIONS = new MethodHandle[CompiledExpression.POWER + 1];
+        /**
+         * Reads an element of a double array.
+         */
+        private static final MethodHandle ELEMENT = MethodHandles.arrayElementGetter(double[].class);
+
+        static {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                OPERATIONS[CompiledExpression.ADD] = lookup.findStatic(HandleExpression.class, "add", OPERATION);
+                OPERATIONS[CompiledExpression.SUBTRACT] = lookup.findStatic(HandleExpression.class, "subtract", OPERATION);
+                OPERATIONS[CompiledExpression.MULTIPLY] = lookup.findStatic(HandleExpression.class, "multiply", OPERATION);
+                OPERATIONS[CompiledExpression.DIVIDE] = lookup.findStatic(HandleExpression.class, "divide", OPERATION);
+                OPERATIONS[CompiledExpression.POWER] = lookup.findStatic(Math.class, "pow", OPERATION);
+            } catch (ReflectiveOperationException ex) {
+                throw new ExceptionInInitializerError(ex);
+            }
+        }
+
+        /**
+         * The postfix program the handle was built from, and the fallback when it couldn't be.
+         */
+        final CompiledExpression interpreted;
+        /**
+         * The program as a method handle, null if it applies an operation the handle can't express.
+         */
+        private final MethodHandle handle;
+
+        /**
+         * Builds the method handle of a compiled expression.
+         * @param interpreted the compiled expression.
+         */
+        HandleExpression(CompiledExpression interpreted){
+            this.interpreted = interpreted;
+            this.handle = build(interpreted);
+        }
+
+        /**
+         * Replays a postfix program on a stack of handles instead of values.
+         * @param program the program.
+         * @return the handle of the whole program, or null if the program has an APPLY instruction.
+         */
+        private static MethodHandle build(CompiledExpression program){
+            MethodHandle[] stack = new MethodHandle[program.stackSize()];
+            double[] constants = new double[program.stackSize()];
+            boolean[] constant = new boolean[program.stackSize()];
+            int top = -1;
+            for(int i = 0; i < program.opcodes.length; i++){
+                int operand = program.operands[i];
+                byte opcode = program.opcodes[i];
+                switch (opcode) {
+                    case CompiledExpression.PUSH_CONSTANT:
+                        top++;
+                        constants[top] = program.constants[operand];
+                        constant[top] = true;
+                        stack[top] = constantHandle(constants[top]);
+                        break;
+                    case CompiledExpression.PUSH_VARIABLE:
+                        top++;
+                        constant[top] = false;
+                        stack[top] = MethodHandles.insertArguments(ELEMENT, 1, operand);
+                        break;
+                    case CompiledExpression.APPLY:
+                        return null;
+                    default:
+                        top--;
+                        if(constant[top] && constant[top + 1]){
+                            constants[top] = fold(opcode, constants[top], constants[top + 1]);
+                            stack[top] = constantHandle(constants[top]);
+                            break;
+                        }
+                        constant[top] = false;
+                        MethodHandle both = MethodHandles.filterArguments(OPERATIONS[opcode], 0, stack[top], stack[top + 1]);
+                        stack[top] = MethodHandles.permuteArguments(both, PROGRAM, 0, 0);
+                        break;
+                }
+            }
+            return stack[top];
+        }
+
+        /**
+         * Gets a handle that ignores the variable values and returns a constant.
+         * @param value the constant.
+         * @return the handle.
+         */
+        private static MethodHandle constantHandle(double value){
+            return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+        }
+
+        /**
+         * Applies a default operation to two constants while building, through the same handle used at run time.
+         * @param opcode the opcode of the operation.
+         * @param left the left operand.
+         * @param right the right operand.
+         * @return the result of the operation.
+         */
+        private static double fold(byte opcode, double left, double right){
+            try {
+                return (double) OPERATIONS[opcode].invokeExact(left, right);
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        private static double add(double left, double right){
+            return left + right;
+        }
+
+        private static double subtract(double left, double right){
+            return left - right;
+        }
+
+        private static double multiply(double left, double right){
+            return left * right;
+        }
+
+        private static double divide(double left, double right){
+            return left / right;
+        }
+
+        /**
+         * Tells whether the expression runs as a method handle or through the interpreter.
+         * @return true if it runs as a method handle.
+         */
+        boolean isCompiled(){
+            return handle != null;
+        }
+
+        /**
+         * Evaluates the expression with the configuration's current variable values.
+         * @return the result of the evaluation.
+         */
+        double evaluate(){
+            return evaluate(interpreted.config.variableValues);
+        }
+
+        /**
+         * Evaluates the expression with the given variable values instead of the configuration's.
+         * @param variables the value of every variable slot, see CompiledExpression.slot() and bindings().
+         * @return the result of the evaluation.
+         */
+        double evaluate(double[] variables){
+            if(handle == null){
+                return interpreted.evaluate(new double[interpreted.stackSize()], variables);
+            }
+            try {
+                return (double) handle.invokeExact(variables);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Emits the instruction for an operation: its own opcode if it is a default operation,
+     * or an APPLY of the next evaluator table entry otherwise.
+     * @param operation the operation character.
+     * @param config the frozen configuration.
+     * @param opcodes the opcodes emitted so far.
+     * @param operands the operands emitted so far.
+     * @param instructions the number of instructions emitted so far.
+     * @param applied the operation characters of the evaluator table so far.
+     * @param appliedCount the size of the evaluator table so far.
+     * @return the new number of instructions.
+     */
+    private static int emitOperation(char operation, FrozenEvaluationConfig config, byte[] opcodes, int[] operands,
+                                     int instructions, char[] applied, int appliedCount){
+        byte kind = config.kinds[operation];
+        opcodes[instructions] = kind;
+        if(kind == CompiledExpression.APPLY){
+            applied[appliedCount] = operation;
+            operands[instructions] = appliedCount;
+        }
+        return instructions + 1;
+    }
+
+    /**
+     * Gets the size of the evaluator table after an instruction was emitted.
+     * @param opcodes the opcodes emitted so far.
+     * @param instructions the number of instructions emitted so far.
+     * @param appliedCount the size of the evaluator table before the last instruction.
+     * @return the new size of the evaluator table.
+     */
+    private static int countApplied(byte[] opcodes, int instructions, int appliedCount){
+        return opcodes[instructions - 1] == CompiledExpression.APPLY ? appliedCount + 1 : appliedCount;
+    }
+
+    /**
+     * Checks that an operation about to be applied has two operands to work with.
+     * @param depth the number of values on the stack before the operation.
+     * @param expression the expression being compiled, for the error message.
+     * @return the number of values on the stack after the operation.
+     * @throws ArithmeticException if there are not enough operands.
+     */
+    private static int checkApply(int depth, String expression) throws ArithmeticException {
+        if(depth < 2){
+            throw new ArithmeticException("Invalid infix expression: " + expression);
+        }
+        return depth - 1;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash index from double or long values to the first position they were added at.
+ * Doubles are stored as their raw long bits, so two values are the same key exactly when
+ * Double.compare considers them equal (NaN matches NaN, 0.0 does not match -0.0),
+ * and nothing gets boxed on the way in or out.
+ */
+class ValueIndex {
+
+	private static final long EMPTY = 0x7ff80000_00000001L;//a NaN payload doubleToLongBits never produces
+
+	private long[] keys;
+	private int[] positions;
+	private int mask;
+	private int size;
+	private int emptyKeyPosition = -1;//the position of the one long key that collides with EMPTY
+
+	ValueIndex(int expected){
+		int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+		keys = new long[capacity];
+		positions = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Records the position of a value, unless the value was already recorded earlier.
+	 * @param value the value to index.
+	 * @param position the position of the value.
+	 */
+	void putIfAbsent(double value, int position){
+		putIfAbsent(Double.doubleToLongBits(value), position);
+	}
+
+	/**
+	 * Records the position of a long value, unless the value was already recorded earlier.
+	 * Long keys should not be mixed with double keys in the same index.
+	 * @param bits the value to index.
+	 * @param position the position of the value.
+	 */
+	void putIfAbsent(long bits, int position){
+		if(bits == EMPTY){
+			if(emptyKeyPosition < 0){
+				emptyKeyPosition = position;
+				size++;
+			}
+			return;
+		}
+		int slot = slot(bits);
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == bits){
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = bits;
+		positions[slot] = position;
+		if(++size * 2 > keys.length){
+			grow();
+		}
+	}
+
+	/**
+	 * Looks up the first position a value was recorded at.
+	 * @param value the value to look for.
+	 * @return the position, or -1 if the value was never recorded.
+	 */
+	int get(double value){
+		return get(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Looks up the first position a long value was recorded at.
+	 * @param bits the value to look for.
+	 * @return the position, or -1 if the value was never recorded.
+	 */
+	int get(long bits){
+		if(bits == EMPTY){
+			return emptyKeyPosition;
+		}
+		int slot = slot(bits);
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == bits){
+				return positions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	int size(){
+		return size;
+	}
+
+	private int slot(long bits){
+		long h = bits * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	private void grow(){
+		long[] oldKeys = keys;
+		int[] oldPositions = positions;
+		keys = new long[oldKeys.length * 2];
+		positions = new int[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY){
+				int slot = slot(oldKeys[i]);
+				while(keys[slot] != EMPTY){
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				positions[slot] = oldPositions[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+import benchmarks.Targets;
+
+/**
+ * Exposes the default-package solver and evaluator to the benchmarks package.
+ */
+public class BenchTargets implements Targets {
+
+    private final Utils.ShuntingEvaluationConfig config = Utils.ShuntingEvaluationConfig.createDefault()
+            .variable("x", 1).variable("y", 2).variable("z", 3);
+    private final OperationInsertion solver = new OperationInsertion(OperationInsertion.DEFAULT_OPERATORS);
+    private double[] stack = new double[0];
+
+    @Override
+    public double evaluate(String expression) {
+        return Utils.evaluateExpression(expression, config);
+    }
+
+    @Override
+    public double evaluateTree(String expression) {
+        return Utils.evaluateExpressionTree(expression, config);
+    }
+
+    @Override
+    public Object shuntingYard(String expression) {
+        return Utils.performShuntingYard(expression, config);
+    }
+
+    @Override
+    public Object parseTree(String expression) {
+        return Utils.buildtree(Utils.performShuntingYard(expression, config));
+    }
+
+    @Override
+    public double evaluateParsedTree(Object tree) {
+        return Utils.evaluateTree((Utils.ShuntingTreeNode) tree, config);
+    }
+
+    @Override
+    public Object compile(String expression) {
+        return Utils.compileExpression(expression, config);
+    }
+
+    @Override
+    public double evaluateCompiled(Object compiled) {
+        return ((Utils.CompiledExpression) compiled).evaluate();
+    }
+
+    @Override
+    public Object compileHandles(String expression) {
+        return Utils.compileHandles(expression, config);
+    }
+
+    @Override
+    public double evaluateHandles(Object compiled) {
+        return ((Utils.HandleExpression) compiled).evaluate();
+    }
+
+    @Override
+    public void variable(String name, double value) {
+        config.variable(name, value);
+    }
+
+    @Override
+    public double[] bindings(Object compiled) {
+        return interpreted(compiled).bindings();
+    }
+
+    @Override
+    public int slot(Object compiled, String name) {
+        return interpreted(compiled).slot(name);
+    }
+
+    @Override
+    public double evaluateCompiledWith(Object compiled, double[] variables) {
+        Utils.CompiledExpression expression = (Utils.CompiledExpression) compiled;
+        if (stack.length < expression.stackSize()) {
+            stack = new double[expression.stackSize()];
+        }
+        return expression.evaluate(stack, variables);
+    }
+
+    @Override
+    public double evaluateHandlesWith(Object compiled, double[] variables) {
+        return ((Utils.HandleExpression) compiled).evaluate(variables);
+    }
+
+    private static Utils.CompiledExpression interpreted(Object compiled) {
+        return compiled instanceof Utils.HandleExpression
+                ? ((Utils.HandleExpression) compiled).interpreted
+                : (Utils.CompiledExpression) compiled;
+    }
+
+    @Override
+    public double[] combinations(int[] ints) {
+        return solver.getValues(ints, 0, ints.length);
+    }
+
+    @Override
+    public String solve(int[] ints) {
+        return solver.solve(ints);
+    }
+}
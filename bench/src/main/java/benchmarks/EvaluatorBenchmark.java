@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the expression evaluator, stage by stage, over expressions of different lengths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    @Param({"4", "16", "64", "256"})
+    public int length;
+
+    @Param({"false", "true"})
+    public boolean parentheses;
+
+    private Targets targets;
+    private String expression;
+    private Object tree;
+    private Object compiled;
+    private Object handles;
+
+    @Setup
+    public void setup() {
+        targets = Targets.load();
+        expression = Inputs.expression(length, parentheses, length);
+        tree = targets.parseTree(expression);
+        compiled = targets.compile(expression);
+        handles = targets.compileHandles(expression);
+    }
+
+    @Benchmark
+    public double evaluateExpression() {
+        return targets.evaluate(expression);
+    }
+
+    @Benchmark
+    public double treePipeline() {
+        return targets.evaluateTree(expression);
+    }
+
+    @Benchmark
+    public Object performShuntingYard() {
+        return targets.shuntingYard(expression);
+    }
+
+    @Benchmark
+    public Object shuntingYardAndBuildtree() {
+        return targets.parseTree(expression);
+    }
+
+    @Benchmark
+    public double evaluateTree() {
+        return targets.evaluateParsedTree(tree);
+    }
+
+    @Benchmark
+    public Object compileExpression() {
+        return targets.compile(expression);
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+        return targets.evaluateCompiled(compiled);
+    }
+
+    @Benchmark
+    public Object compileHandles() {
+        return targets.compileHandles(expression);
+    }
+
+    @Benchmark
+    public double evaluateHandles() {
+        return targets.evaluateHandles(handles);
+    }
+}
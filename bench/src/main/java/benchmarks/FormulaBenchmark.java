@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of evaluating one parsed formula over and over with a changing variable,
+ * with the tree evaluator, the postfix interpreter and the method handle tier.
+ * Expressions of numbers only fold to a constant in the method handle tier, so these use variables.
+ * The tree evaluator reads variables from the configuration, so its baseline pays for updating it;
+ * the other two are passed an array of variable values, so they measure only the evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormulaBenchmark {
+
+    @Param({"4", "16", "64", "256"})
+    public int length;
+
+    private Targets targets;
+    private Object tree;
+    private Object compiled;
+    private Object handles;
+    private double[] compiledVariables;
+    private int compiledX;
+    private double[] handleVariables;
+    private int handleX;
+    private double x;
+
+    @Setup
+    public void setup() {
+        targets = Targets.load();
+        String formula = Inputs.formula(length, length);
+        tree = targets.parseTree(formula);
+        compiled = targets.compile(formula);
+        handles = targets.compileHandles(formula);
+        compiledVariables = targets.bindings(compiled);
+        compiledX = targets.slot(compiled, "x");
+        handleVariables = targets.bindings(handles);
+        handleX = targets.slot(handles, "x");
+    }
+
+    @Benchmark
+    public double evaluateTree() {
+        targets.variable("x", x++);
+        return targets.evaluateParsedTree(tree);
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+        compiledVariables[compiledX] = x++;
+        return targets.evaluateCompiledWith(compiled, compiledVariables);
+    }
+
+    @Benchmark
+    public double evaluateHandles() {
+        handleVariables[handleX] = x++;
+        return targets.evaluateHandlesWith(handles, handleVariables);
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates the expressions and puzzles the benchmarks run on, from fixed seeds so runs are comparable.
+ */
+final class Inputs {
+
+    private static final char[] OPERATORS = {'+', '-', '*', '/'};
+    private static final char[] VARIABLES = {'x', 'y', 'z'};
+
+    private Inputs() {
+    }
+
+    /**
+     * Builds an expression with the given number of operands.
+     * @param operands how many numbers the expression has.
+     * @param parentheses whether to wrap random sub-expressions in parentheses.
+     * @param seed the random seed.
+     * @return the expression.
+     */
+    static String expression(int operands, boolean parentheses, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        int open = 0;
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) {
+                builder.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+            }
+            while (parentheses && i < operands - 1 && random.nextInt(4) == 0) {
+                builder.append('(');
+                open++;
+            }
+            builder.append(1 + random.nextInt(9));
+            while (parentheses && open > 0 && random.nextInt(3) == 0) {
+                builder.append(')');
+                open--;
+            }
+        }
+        while (open-- > 0) {
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds an expression in which about half the operands are the variables x, y and z.
+     * The last operand is always a number.
+     * @param operands how many operands the expression has.
+     * @param seed the random seed.
+     * @return the expression.
+     */
+    static String formula(int operands, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) {
+                builder.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+            }
+            if (i < operands - 1 && random.nextBoolean()) {
+                builder.append(VARIABLES[random.nextInt(VARIABLES.length)]);
+            } else {
+                builder.append(1 + random.nextInt(9));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Finds a puzzle of the given size that is solvable, or one that is not.
+     * Unsolvable puzzles start with a large number, which makes them common enough to find by sampling.
+     * @param targets the solver used to check candidates.
+     * @param count how many numbers the puzzle has.
+     * @param solvable whether the puzzle should have an equation.
+     * @return the puzzle.
+     */
+    static int[] puzzle(Targets targets, int count, boolean solvable) {
+        Random random = new Random(count * 31L + (solvable ? 1 : 0));
+        for (int attempt = 0; attempt < 10_000; attempt++) {
+            int[] ints = new int[count];
+            for (int i = 0; i < count; i++) {
+                ints[i] = random.nextInt(10);
+            }
+            if (!solvable) {
+                ints[0] = 10_000 + random.nextInt(90_000);
+                for (int i = 1; i < count; i++) {
+                    ints[i] = 2 + random.nextInt(8);
+                }
+            }
+            if ((targets.solve(ints) != null) == solvable) {
+                return ints;
+            }
+        }
+        throw new IllegalStateException("No " + (solvable ? "solvable" : "unsolvable") + " puzzle of " + count + " numbers found");
+    }
+}
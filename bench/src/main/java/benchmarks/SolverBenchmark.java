@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end solve latency and combination enumeration cost by puzzle size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({"4", "6", "8", "10", "12", "14"})
+    public int digits;
+
+    @Param({"true", "false"})
+    public boolean solvable;
+
+    private Targets targets;
+    private int[] puzzle;
+
+    @Setup
+    public void setup() {
+        targets = Targets.load();
+        puzzle = Inputs.puzzle(targets, digits, solvable);
+    }
+
+    @Benchmark
+    public String solve() {
+        return targets.solve(puzzle);
+    }
+
+    @Benchmark
+    public double[] getCombinations() {
+        return targets.combinations(puzzle);
+    }
+}
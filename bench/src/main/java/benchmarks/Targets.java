@@ -0,0 +1,102 @@
+package benchmarks;
+
+/**
+ * The solver and evaluator entry points being measured.
+ * The solver classes are in the default package, which JMH benchmarks cannot import from,
+ * so they are reached through this interface, implemented by BenchTargets in the default package.
+ */
+public interface Targets {
+
+    /**
+     * Evaluates an expression with the default configuration through evaluateExpression,
+     * which compiles it only on the first call and takes it from the shared ExpressionCache after that.
+     */
+    double evaluate(String expression);
+
+    /**
+     * Evaluates an expression with the original Shunting-Yard, buildtree, evaluateTree pipeline.
+     */
+    double evaluateTree(String expression);
+
+    /**
+     * Runs only performShuntingYard on an expression.
+     */
+    Object shuntingYard(String expression);
+
+    /**
+     * Runs performShuntingYard and buildtree on an expression.
+     */
+    Object parseTree(String expression);
+
+    /**
+     * Runs evaluateTree on the result of parseTree.
+     */
+    double evaluateParsedTree(Object tree);
+
+    /**
+     * Compiles an expression with compileExpression.
+     */
+    Object compile(String expression);
+
+    /**
+     * Evaluates the result of compile.
+     */
+    double evaluateCompiled(Object compiled);
+
+    /**
+     * Compiles an expression into method handles with compileHandles.
+     */
+    Object compileHandles(String expression);
+
+    /**
+     * Evaluates the result of compileHandles.
+     */
+    double evaluateHandles(Object compiled);
+
+    /**
+     * Sets one of the variables x, y and z, which formulas use, in the configuration.
+     */
+    void variable(String name, double value);
+
+    /**
+     * Makes a copy of the variable values of the result of compile or compileHandles,
+     * to be changed and passed to evaluateCompiledWith or evaluateHandlesWith.
+     */
+    double[] bindings(Object compiled);
+
+    /**
+     * Finds the index of a variable in the arrays made by bindings.
+     */
+    int slot(Object compiled, String name);
+
+    /**
+     * Evaluates the result of compile with the given variable values, on a stack kept between calls.
+     */
+    double evaluateCompiledWith(Object compiled, double[] variables);
+
+    /**
+     * Evaluates the result of compileHandles with the given variable values.
+     */
+    double evaluateHandlesWith(Object compiled, double[] variables);
+
+    /**
+     * Computes the values of every operator combination for the numbers.
+     */
+    double[] combinations(int[] ints);
+
+    /**
+     * Solves a puzzle with the sequential solver.
+     */
+    String solve(int[] ints);
+
+    /**
+     * Loads the default-package implementation.
+     */
+    static Targets load() {
+        try {
+            return (Targets) Class.forName("BenchTargets").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("BenchTargets is missing from the benchmark jar", ex);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+# Measures the time from launching the solver to its first line of output, for each
+# way of running it that has been built: the plain jar, the jar with its AppCDS archive,
+# the same with only the C1 compiler, and the native executable.
+#
+#   mvn -B package && ./startup.sh [runs] [puzzle]
+#
+# Prints the fastest and the median run of each, in milliseconds.
+
+set -euo pipefail
+
+cd "$(dirname "$0")"
+runs=${1:-20}
+puzzle=${2:-"3 4 7"}
+jar=target/operation-insertion.jar
+archive=target/operation-insertion.jsa
+native=target/operation-insertion
+java=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+if [ ! -f "$jar" ]; then
+    echo "No $jar; run mvn -B package first." >&2
+    exit 1
+fi
+
+# Prints the milliseconds until the command writes its first line.
+# A JVM warning instead, like an archive that doesn't match the jar, stops the script.
+first_output() {
+    local start end line
+    start=$(date +%s%N)
+    IFS= read -r line < <(echo "$puzzle" | "$@" 2>&1)
+    end=$(date +%s%N)
+    wait
+    case $line in
+        "["*|Error*|Exception*)
+            echo "$* printed: $line" >&2
+            exit 1
+            ;;
+    esac
+    echo $(( (end - start) / 1000000 ))
+}
+
+measure() {
+    local name=$1
+    shift
+    local times=()
+    for _ in $(seq "$runs"); do
+        times+=("$(first_output "$@")")
+    done
+    local sorted
+    sorted=$(printf '%s\n' "${times[@]}" | sort -n)
+    printf '%-24s min %5d ms   median %5d ms\n' "$name" \
+        "$(echo "$sorted" | head -n 1)" "$(echo "$sorted" | sed -n "$(( (runs + 1) / 2 ))p")"
+}
+
+measure "jar" "$java" -jar "$jar"
+if [ -f "$archive" ]; then
+    measure "jar + AppCDS" "$java" -XX:SharedArchiveFile="$archive" -jar "$jar"
+    measure "jar + AppCDS + C1" "$java" -XX:SharedArchiveFile="$archive" -XX:TieredStopAtLevel=1 -jar "$jar"
+fi
+if [ -x "$native" ]; then
+    measure "native" "$native"
+fi
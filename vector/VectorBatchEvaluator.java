@@ -0,0 +1,57 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A BatchEvaluator that runs the lanes of a block in SIMD registers, as many at once as the
+ * preferred double species holds. Lanes that take '*' at a position keep their sum and sign and
+ * multiply their term; the others commit their term and start a new one. Both are computed for
+ * every lane and blended by the operator tables, so the values are the ones the scalar lanes give.
+ *
+ * The Vector API is an incubator module, so this class lives apart from the other sources, which
+ * build without it. Compile and run it with the module added; BatchEvaluator.create() loads it
+ * when it can and falls back to the scalar lanes when it can't:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp . -d . vector/VectorBatchEvaluator.java
+ *   java --add-modules jdk.incubator.vector OperationInsertion --vector
+ */
+class VectorBatchEvaluator extends BatchEvaluator {
+
+	static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	VectorBatchEvaluator(char[] operators){
+		super(operators, MAX_BLOCK);
+	}
+
+	@Override
+	boolean vectorized(){
+		return true;
+	}
+
+	@Override
+	void block(double[] values, int offset, int[] ints, int position, int s, double sum, double sign, double term){
+		boolean[][] multiply = this.multiply[s];
+		double[][] signs = this.signs[s];
+		int size = sizes[s], bound = SPECIES.loopBound(size);
+		for (int b = 0; b < bound; b += SPECIES.length()) {
+			DoubleVector laneSum = DoubleVector.broadcast(SPECIES, sum);
+			DoubleVector laneSign = DoubleVector.broadcast(SPECIES, sign);
+			DoubleVector laneTerm = DoubleVector.broadcast(SPECIES, term);
+			for (int j = 0; j < s; j++) {
+				VectorMask<Double> times = VectorMask.fromArray(SPECIES, multiply[j], b);
+				DoubleVector number = DoubleVector.broadcast(SPECIES, ints[position + j]);
+				DoubleVector committed = commit(laneSum, laneSign, laneTerm);
+				laneSum = committed.blend(laneSum, times);
+				laneSign = DoubleVector.fromArray(SPECIES, signs[j], b).blend(laneSign, times);
+				laneTerm = number.blend(laneTerm.mul(number), times);
+			}
+			commit(laneSum, laneSign, laneTerm).intoArray(values, offset + b);
+		}
+		lanes(values, offset, bound, size, ints, position, s, sum, sign, term);
+	}
+
+	private static DoubleVector commit(DoubleVector sum, DoubleVector sign, DoubleVector term){
+		return sum.add(sign.mul(term)).blend(term, sign.compare(VectorOperators.EQ, 0));
+	}
+}